@@ -0,0 +1,87 @@
+package org.uestc.weglas.benchmark;
+
+import com.alibaba.fastjson2.JSON;
+import org.uestc.weglas.base.entity.ConversationChatDetailEntity;
+import org.uestc.weglas.base.entity.ConversationEntity;
+import org.uestc.weglas.core.converter.ConversationChatDetailConverter;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.uestc.weglas.core.model.BizConstants.CHAT_EXT_CORRELATION_ID;
+import static org.uestc.weglas.core.model.BizConstants.CHAT_EXT_DEVICE_ID;
+import static org.uestc.weglas.core.model.BizConstants.CHAT_EXT_STATUS;
+
+/**
+ * 基准测试数据：一问一答交替的历史聊天，ext的分布接近线上
+ * 用户输入多为空ext，设备输入带设备id和请求id，助手回答带状态。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class BenchmarkData {
+
+    private static final String USER_TEXT = "帮我总结一下这段文字的要点，并给出三个可以继续追问的问题。";
+
+    private static final String ASSISTANT_TEXT;
+
+    static {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            builder.append("第").append(i).append("点：这是模型生成的一段较长的回答内容，包含中文和 English words. ");
+        }
+        ASSISTANT_TEXT = builder.toString();
+    }
+
+    public static String assistantText() {
+        return ASSISTANT_TEXT;
+    }
+
+    public static List<ConversationChatDetailEntity> chatEntities(int size) {
+        List<ConversationChatDetailEntity> entities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ConversationChatDetailEntity entity = new ConversationChatDetailEntity();
+            entity.setId(i + 1);
+            entity.setConversationId(1);
+            entity.setType("TEXT");
+            boolean user = i % 2 == 0;
+            entity.setRole(user ? "user" : "assistant");
+            entity.setContent(user ? USER_TEXT : ASSISTANT_TEXT);
+            entity.setExt(JSON.toJSONString(ext(i)));
+            entity.setGmtCreate(new Date());
+            entity.setGmtModified(new Date());
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    public static List<ConversationChatDetail> chats(int size) {
+        return ConversationChatDetailConverter.convert(chatEntities(size));
+    }
+
+    public static ConversationEntity conversationEntity() {
+        ConversationEntity entity = new ConversationEntity();
+        entity.setId(1);
+        entity.setTitle("基准测试会话");
+        entity.setLlmModel("default");
+        entity.setExt("{}");
+        entity.setGmtCreate(new Date());
+        entity.setGmtModified(new Date());
+        return entity;
+    }
+
+    private static Map<String, String> ext(int i) {
+        Map<String, String> ext = new HashMap<>();
+        if (i % 2 == 1) {
+            ext.put(CHAT_EXT_STATUS, "COMPLETED");
+        } else if (i % 8 == 0) {
+            ext.put(CHAT_EXT_DEVICE_ID, "device-" + i);
+            ext.put(CHAT_EXT_CORRELATION_ID, "7f6c1e4a-3b2d-4c8e-9a1f-" + (100000000000L + i));
+        }
+        return ext;
+    }
+}
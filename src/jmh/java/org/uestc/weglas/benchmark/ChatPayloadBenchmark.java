@@ -0,0 +1,85 @@
+package org.uestc.weglas.benchmark;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.TypeReference;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uestc.weglas.core.builder.ChatPayloadBuilder;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型请求体构建（含WebClient使用的jackson序列化）和同步响应解析
+ * 响应分为url编码和未编码两种，baseline为原实现。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatPayloadBenchmark {
+
+    @Param({"10", "50", "200"})
+    private int historySize;
+
+    @Param({"true", "false"})
+    private boolean urlEncoded;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private List<ConversationChatDetail> history;
+
+    private ConversationChatDetail currentChat;
+
+    private String responseJson;
+
+    @Setup
+    public void setup() throws UnsupportedEncodingException {
+        history = BenchmarkData.chats(historySize);
+        currentChat = history.get(0);
+        String response = BenchmarkData.assistantText();
+        Map<String, String> body = new HashMap<>();
+        body.put("response", urlEncoded ? URLEncoder.encode(response, StandardCharsets.UTF_8.name()) : response);
+        responseJson = JSON.toJSONString(body);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializePayload() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(ChatPayloadBuilder.buildPayload(currentChat, history));
+    }
+
+    @Benchmark
+    public String parseResponseBaseline() throws UnsupportedEncodingException {
+        Map<String, String> map = JSON.parseObject(responseJson, new TypeReference<Map<String, String>>() {
+        });
+        return URLDecoder.decode(map.getOrDefault("response", ""), StandardCharsets.UTF_8.name());
+    }
+
+    @Benchmark
+    public String parseResponse() {
+        return ChatPayloadBuilder.parseResponse(responseJson);
+    }
+}
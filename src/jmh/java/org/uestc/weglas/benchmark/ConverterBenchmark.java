@@ -0,0 +1,114 @@
+package org.uestc.weglas.benchmark;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.TypeReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uestc.weglas.base.entity.ConversationChatDetailEntity;
+import org.uestc.weglas.base.entity.ConversationEntity;
+import org.uestc.weglas.core.converter.ConversationChatDetailConverter;
+import org.uestc.weglas.core.converter.ConversationConverter;
+import org.uestc.weglas.core.model.Conversation;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * entity与model转换，按一次加载的历史聊天条数
+ * baseline为每行新建匿名TypeReference、立即解析ext的原实现，用于对比；
+ * chatToModelAndReadExt为每行都读取ext的情况，即延迟解析的最坏情况。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+    @Param({"10", "50", "200"})
+    private int historySize;
+
+    private List<ConversationChatDetailEntity> entities;
+
+    private List<ConversationChatDetail> chats;
+
+    private ConversationEntity conversationEntity;
+
+    private Conversation conversation;
+
+    @Setup
+    public void setup() {
+        entities = BenchmarkData.chatEntities(historySize);
+        chats = BenchmarkData.chats(historySize);
+        conversationEntity = BenchmarkData.conversationEntity();
+        conversation = ConversationConverter.convert(conversationEntity);
+    }
+
+    @Benchmark
+    public List<ConversationChatDetail> chatToModelBaseline() {
+        List<ConversationChatDetail> result = new ArrayList<>();
+        for (ConversationChatDetailEntity entity : entities) {
+            ConversationChatDetail chat = new ConversationChatDetail();
+            chat.setId(entity.getId());
+            chat.setConversationId(entity.getConversationId());
+            chat.setType(entity.getType());
+            chat.setRole(entity.getRole());
+            chat.setContent(entity.getContent());
+            chat.setExt(JSON.parseObject(entity.getExt(), new TypeReference<Map<String, String>>() {
+            }));
+            chat.setGmtCreate(entity.getGmtCreate());
+            chat.setGmtModified(entity.getGmtModified());
+            result.add(chat);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<ConversationChatDetail> chatToModel() {
+        return ConversationChatDetailConverter.convert(entities);
+    }
+
+    @Benchmark
+    public int chatToModelAndReadExt() {
+        int size = 0;
+        for (ConversationChatDetail chat : ConversationChatDetailConverter.convert(entities)) {
+            size += chat.getExt().size();
+        }
+        return size;
+    }
+
+    @Benchmark
+    public List<ConversationChatDetailEntity> chatToEntity() {
+        List<ConversationChatDetailEntity> result = new ArrayList<>(chats.size());
+        for (ConversationChatDetail chat : chats) {
+            result.add(ConversationChatDetailConverter.convert(chat));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Conversation conversationToModel() {
+        return ConversationConverter.convert(conversationEntity);
+    }
+
+    @Benchmark
+    public ConversationEntity conversationToEntity() {
+        return ConversationConverter.convert(conversation);
+    }
+}
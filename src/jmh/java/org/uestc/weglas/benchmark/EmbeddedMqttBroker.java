@@ -0,0 +1,67 @@
+package org.uestc.weglas.benchmark;
+
+import io.moquette.BrokerConstants;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Properties;
+
+/**
+ * 基准和压测使用的嵌入式mqtt broker：只监听本机tcp端口，允许匿名连接，消息不落盘
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class EmbeddedMqttBroker {
+
+    /**
+     * 单条消息最大字节数，默认值8k放不下较长的回答
+     */
+    private static final int MAX_MESSAGE_BYTES = 1024 * 1024;
+
+    private final Server server = new Server();
+
+    private final int port;
+
+    private EmbeddedMqttBroker(int port) {
+        this.port = port;
+    }
+
+    /**
+     * @param port 监听端口，{@code 0} 时使用随机空闲端口
+     */
+    public static EmbeddedMqttBroker start(int port) throws IOException {
+        EmbeddedMqttBroker broker = new EmbeddedMqttBroker(port == 0 ? freePort() : port);
+        Properties properties = new Properties();
+        properties.setProperty(BrokerConstants.HOST_PROPERTY_NAME, "127.0.0.1");
+        properties.setProperty(BrokerConstants.PORT_PROPERTY_NAME, String.valueOf(broker.port));
+        properties.setProperty(BrokerConstants.WEB_SOCKET_PORT_PROPERTY_NAME, BrokerConstants.DISABLED_PORT_BIND);
+        properties.setProperty(BrokerConstants.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+        properties.setProperty(BrokerConstants.PERSISTENT_STORE_PROPERTY_NAME, "");
+        properties.setProperty(BrokerConstants.NETTY_MAX_BYTES_PROPERTY_NAME, String.valueOf(MAX_MESSAGE_BYTES));
+        // 默认按定时器批量刷出，确认延迟会被放大到秒级
+        properties.setProperty(BrokerConstants.IMMEDIATE_BUFFER_FLUSH_PROPERTY_NAME, "true");
+        broker.server.startServer(new MemoryConfig(properties));
+        return broker;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public String url() {
+        return "tcp://127.0.0.1:" + port;
+    }
+
+    public void stop() {
+        server.stopServer();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
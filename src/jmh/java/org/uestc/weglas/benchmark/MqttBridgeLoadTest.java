@@ -0,0 +1,249 @@
+package org.uestc.weglas.benchmark;
+
+import com.alibaba.fastjson2.JSON;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.uestc.weglas.biz.dto.DeviceChatReply;
+import org.uestc.weglas.biz.dto.DeviceChatRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * mqtt设备聊天桥接压测
+ * 模拟多个设备，每个设备依次发送请求并等待DONE/ERROR，统计首个分片和完整应答的延迟。
+ * 压测对象是运行中的服务，需要db和模型服务；不指定 --broker 时在1883端口启动嵌入式broker，
+ * 服务使用默认的 spring.mqtt.url 即可连上。
+ * 指定 --ack-delay 时嵌入式broker改用随机端口，1883端口由 {@link SlowLinkProxy} 转发并把broker发给服务的数据
+ * （包括PUBACK）延迟该毫秒数，模拟确认缓慢时应答分片的积压；设备仍直连broker。
+ * <pre>
+ * mvn -P jmh test-compile exec:exec -Djmh.main=org.uestc.weglas.benchmark.MqttBridgeLoadTest \
+ *     -Djmh.args="--devices 50 --requests 20"
+ * mvn -P jmh test-compile exec:exec -Djmh.main=org.uestc.weglas.benchmark.MqttBridgeLoadTest \
+ *     -Djmh.args="--devices 10 --requests 5 --ack-delay 500"
+ * </pre>
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class MqttBridgeLoadTest {
+
+    private static final int EMBEDDED_PORT = 1883;
+
+    private static final String PROMPT = "用三句话介绍一下mqtt协议。";
+
+    private final Map<String, String> options;
+
+    private final List<Sample> samples = Collections.synchronizedList(new ArrayList<>());
+
+    private MqttBridgeLoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        new MqttBridgeLoadTest(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        int devices = intOption("devices", 10);
+        int requests = intOption("requests", 10);
+        long startDelay = intOption("start-delay", 0);
+        int ackDelay = intOption("ack-delay", 0);
+        String broker = options.get("broker");
+
+        EmbeddedMqttBroker embedded = null;
+        SlowLinkProxy proxy = null;
+        if (broker == null) {
+            embedded = EmbeddedMqttBroker.start(ackDelay > 0 ? 0 : EMBEDDED_PORT);
+            broker = embedded.url();
+            System.out.println("embedded broker started at " + broker);
+            if (ackDelay > 0) {
+                proxy = SlowLinkProxy.start(EMBEDDED_PORT, embedded.port(), ackDelay);
+                System.out.println("slow link proxy on " + EMBEDDED_PORT + ", ack delay " + ackDelay + "ms");
+            }
+        }
+        if (startDelay > 0) {
+            // 等待服务连上broker并订阅请求主题
+            Thread.sleep(startDelay);
+        }
+
+        CountDownLatch finished = new CountDownLatch(devices);
+        long start = System.nanoTime();
+        for (int i = 0; i < devices; i++) {
+            Device device = new Device(broker, "load-" + i, requests, finished);
+            new Thread(device, "device-" + i).start();
+        }
+        finished.await();
+        long elapsed = System.nanoTime() - start;
+
+        report(elapsed);
+        if (proxy != null) {
+            proxy.stop();
+        }
+        if (embedded != null) {
+            embedded.stop();
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        List<Long> firstChunk = new ArrayList<>();
+        List<Long> total = new ArrayList<>();
+        Map<String, Integer> outcomes = new TreeMap<>();
+        long chunks = 0;
+        for (Sample sample : samples) {
+            outcomes.merge(sample.outcome, 1, Integer::sum);
+            if (sample.firstChunkNanos > 0) {
+                firstChunk.add(sample.firstChunkNanos);
+            }
+            if (DeviceChatReply.TYPE_DONE.equals(sample.outcome)) {
+                total.add(sample.totalNanos);
+            }
+            chunks += sample.chunks;
+        }
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("requests=%d elapsed=%.1fs throughput=%.1f req/s chunks=%d%n",
+                samples.size(), seconds, samples.size() / seconds, chunks);
+        System.out.println("outcomes=" + outcomes);
+        System.out.println("first chunk " + percentiles(firstChunk));
+        System.out.println("done        " + percentiles(total));
+    }
+
+    private static String percentiles(List<Long> nanos) {
+        if (nanos.isEmpty()) {
+            return "n/a";
+        }
+        Collections.sort(nanos);
+        return String.format("p50=%dms p95=%dms p99=%dms max=%dms", percentile(nanos, 0.5),
+                percentile(nanos, 0.95), percentile(nanos, 0.99), percentile(nanos, 1));
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        int index = (int) Math.min(sorted.size() - 1, Math.ceil(p * sorted.size()) - 1);
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(0, index)));
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * 一个设备，同一时间只有一个请求，与默认的每设备并发数一致
+     */
+    private class Device implements Runnable {
+
+        private final String broker;
+
+        private final String deviceId;
+
+        private final int requests;
+
+        private final CountDownLatch finished;
+
+        private final Map<String, Sample> pending = new ConcurrentHashMap<>();
+
+        Device(String broker, String deviceId, int requests, CountDownLatch finished) {
+            this.broker = broker;
+            this.deviceId = deviceId;
+            this.requests = requests;
+            this.finished = finished;
+        }
+
+        @Override
+        public void run() {
+            long timeout = intOption("timeout", 120000);
+            String prompt = options.getOrDefault("prompt", PROMPT);
+            MqttAsyncClient client = null;
+            try {
+                client = new MqttAsyncClient(broker, deviceId, new MemoryPersistence());
+                MqttConnectOptions connectOptions = new MqttConnectOptions();
+                connectOptions.setCleanSession(true);
+                client.connect(connectOptions).waitForCompletion();
+                client.subscribe("device/" + deviceId + "/reply", 1, (topic, message) -> onReply(message))
+                        .waitForCompletion();
+
+                for (int i = 0; i < requests; i++) {
+                    Sample sample = new Sample();
+                    String correlationId = UUID.randomUUID().toString();
+                    pending.put(correlationId, sample);
+                    byte[] payload = JSON.toJSONBytes(DeviceChatRequest.builder()
+                            .correlationId(correlationId)
+                            .content(prompt)
+                            .build());
+                    sample.start = System.nanoTime();
+                    client.publish("device/" + deviceId + "/prompt", payload, 1, false);
+                    try {
+                        sample.done.get(timeout, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        sample.outcome = "TIMEOUT";
+                    }
+                    pending.remove(correlationId);
+                    samples.add(sample);
+                }
+            } catch (Exception e) {
+                System.err.println(deviceId + " failed: " + e);
+            } finally {
+                finished.countDown();
+                if (client != null) {
+                    try {
+                        client.disconnect().waitForCompletion();
+                        client.close();
+                    } catch (Exception e) {
+                        // 压测结束，忽略
+                    }
+                }
+            }
+        }
+
+        private void onReply(MqttMessage message) {
+            DeviceChatReply reply = JSON.parseObject(message.getPayload(), DeviceChatReply.class);
+            Sample sample = pending.get(reply.getCorrelationId());
+            if (sample == null) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (DeviceChatReply.TYPE_CHUNK.equals(reply.getType())) {
+                if (sample.chunks++ == 0) {
+                    sample.firstChunkNanos = now - sample.start;
+                }
+                return;
+            }
+            sample.totalNanos = now - sample.start;
+            sample.outcome = DeviceChatReply.TYPE_ERROR.equals(reply.getType())
+                    ? DeviceChatReply.TYPE_ERROR + ":" + reply.getContent() : reply.getType();
+            sample.done.complete(null);
+        }
+    }
+
+    private static class Sample {
+
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private volatile long start;
+
+        private volatile long firstChunkNanos;
+
+        private volatile long totalNanos;
+
+        private volatile int chunks;
+
+        private volatile String outcome;
+    }
+}
@@ -0,0 +1,104 @@
+package org.uestc.weglas.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uestc.weglas.biz.dto.DeviceChatReply;
+import org.uestc.weglas.biz.dto.DeviceChatRequest;
+import org.uestc.weglas.core.codec.MqttPayloadCodec;
+import org.uestc.weglas.core.codec.MqttPayloadCodecs;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * mqtt编解码：json与jsonb，以及超过阈值时的gzip
+ * compressThreshold为0时不压缩；应答主题配置为允许压缩的主题。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MqttPayloadCodecBenchmark {
+
+    private static final String REQUEST_TOPIC = "device/1/prompt";
+
+    private static final String REPLY_TOPIC = "device/1/reply";
+
+    @Param({"json", "jsonb"})
+    private String codecName;
+
+    /**
+     * 应答内容的字符数，对应合并后的单条分片和整段回答
+     */
+    @Param({"64", "2048"})
+    private int contentLength;
+
+    @Param({"0", "1024"})
+    private int compressThreshold;
+
+    private MqttPayloadCodecs codecs;
+
+    private MqttPayloadCodec codec;
+
+    private DeviceChatReply reply;
+
+    private byte[] requestBytes;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        codecs = new MqttPayloadCodecs();
+        set("defaultCodecName", codecName);
+        set("topicCodecs", new String[0]);
+        set("compressTopics", new String[]{"device/+/reply", REQUEST_TOPIC});
+        set("compressThreshold", compressThreshold);
+        set("maxDecompressedBytes", 1024 * 1024);
+        codecs.init();
+        codec = codecs.codecFor(REQUEST_TOPIC);
+
+        String text = BenchmarkData.assistantText();
+        while (text.length() < contentLength) {
+            text = text + text;
+        }
+        text = text.substring(0, contentLength);
+        reply = DeviceChatReply.builder()
+                .correlationId("7f6c1e4a-3b2d-4c8e-9a1f-100000000001")
+                .seq(42)
+                .type(DeviceChatReply.TYPE_CHUNK)
+                .content(text)
+                .build();
+        DeviceChatRequest request = new DeviceChatRequest();
+        request.setCorrelationId(reply.getCorrelationId());
+        request.setContent(text);
+        requestBytes = codecs.encode(REQUEST_TOPIC, codec, request);
+    }
+
+    @Benchmark
+    public byte[] encodeReply() {
+        return codecs.encode(REPLY_TOPIC, codec, reply);
+    }
+
+    @Benchmark
+    public DeviceChatRequest decodeRequest() {
+        return codecs.decode(codec, requestBytes, DeviceChatRequest.class);
+    }
+
+    private void set(String name, Object value) throws ReflectiveOperationException {
+        Field field = MqttPayloadCodecs.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(codecs, value);
+    }
+}
@@ -0,0 +1,134 @@
+package org.uestc.weglas.benchmark;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uestc.weglas.core.client.MqttAsyncPublisher;
+import org.uestc.weglas.core.client.MqttOverflowPolicy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * mqtt发送吞吐，连接本机嵌入式broker，结果为每秒确认的消息数
+ * baseline为逐条发送并等待broker确认，即改为异步发送之前 publish 的做法，不受maxInflight影响。
+ * 本机broker的往返时间接近0，两者的差距远小于跨机房的实际部署。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MqttPublishBenchmark {
+
+    private static final int MESSAGES = 1000;
+
+    private static final String TOPIC = "benchmark/publish";
+
+    @Param({"1"})
+    private int qos;
+
+    /**
+     * 异步发送的in-flight窗口
+     */
+    @Param({"10", "100"})
+    private int maxInflight;
+
+    @Param({"256"})
+    private int payloadSize;
+
+    private EmbeddedMqttBroker broker;
+
+    private MqttAsyncClient blockingClient;
+
+    private MqttAsyncClient asyncClient;
+
+    private MqttAsyncPublisher publisher;
+
+    private byte[] payload;
+
+    @Setup
+    public void setup() throws Exception {
+        broker = EmbeddedMqttBroker.start(0);
+        blockingClient = connect("benchmark-blocking", 1);
+        asyncClient = connect("benchmark-async", maxInflight);
+        publisher = new MqttAsyncPublisher(asyncClient, maxInflight, MESSAGES, MqttOverflowPolicy.BLOCK, 10000L);
+        payload = BenchmarkData.assistantText().substring(0, payloadSize / 3).getBytes("UTF-8");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        publisher.shutdown();
+        blockingClient.disconnect().waitForCompletion();
+        asyncClient.disconnect().waitForCompletion();
+        blockingClient.close();
+        asyncClient.close();
+        broker.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void blockingPublish() throws Exception {
+        for (int i = 0; i < MESSAGES; i++) {
+            // 等回调而不是waitForCompletion：后者返回时paho可能尚未释放窗口，下一条会被拒绝
+            CompletableFuture<Void> acked = new CompletableFuture<>();
+            blockingClient.publish(TOPIC, message(), null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    acked.complete(null);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable e) {
+                    acked.completeExceptionally(e);
+                }
+            });
+            acked.join();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void asyncPublish() {
+        CompletableFuture<?>[] futures = new CompletableFuture[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            futures[i] = publisher.publish(TOPIC, message());
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private MqttMessage message() {
+        MqttMessage message = new MqttMessage(payload);
+        message.setQos(qos);
+        return message;
+    }
+
+    private MqttAsyncClient connect(String clientId, int inflight) throws Exception {
+        MqttAsyncClient client = new MqttAsyncClient(broker.url(), clientId, new MemoryPersistence());
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(true);
+        options.setMaxInflight(inflight);
+        client.connect(options).waitForCompletion();
+        return client;
+    }
+}
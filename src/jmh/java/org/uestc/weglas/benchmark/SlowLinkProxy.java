@@ -0,0 +1,157 @@
+package org.uestc.weglas.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟慢链路的tcp代理：客户端到broker原样转发，broker到客户端的数据延迟固定时间后再发出，
+ * 被测服务经过代理连接broker时，每条消息的PUBACK都晚到该时间，用于压测确认缓慢时的发送积压。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class SlowLinkProxy {
+
+    private final ServerSocket server;
+
+    private final int targetPort;
+
+    private final long delayMillis;
+
+    private volatile boolean running = true;
+
+    private SlowLinkProxy(int port, int targetPort, long delayMillis) throws IOException {
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.targetPort = targetPort;
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * @param port        监听端口
+     * @param targetPort  本机broker端口
+     * @param delayMillis broker到客户端方向的延迟
+     */
+    public static SlowLinkProxy start(int port, int targetPort, long delayMillis) throws IOException {
+        SlowLinkProxy proxy = new SlowLinkProxy(port, targetPort, delayMillis);
+        daemon(proxy::accept, "slow-link-accept").start();
+        return proxy;
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException e) {
+            // 压测结束，忽略
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket client = server.accept();
+                Socket broker = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+                client.setTcpNoDelay(true);
+                broker.setTcpNoDelay(true);
+                daemon(() -> pump(client, broker), "slow-link-up").start();
+                BlockingQueue<Packet> delayed = new LinkedBlockingQueue<>();
+                daemon(() -> read(broker, client, delayed), "slow-link-down-read").start();
+                daemon(() -> write(delayed, client, broker), "slow-link-down-write").start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("slow link accept failed: " + e);
+                }
+            }
+        }
+    }
+
+    private static void pump(Socket from, Socket to) {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // 任一端断开即结束
+        } finally {
+            close(from, to);
+        }
+    }
+
+    private void read(Socket from, Socket to, BlockingQueue<Packet> delayed) {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = from.getInputStream()) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                delayed.add(new Packet(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis),
+                        Arrays.copyOf(buffer, n)));
+            }
+        } catch (IOException e) {
+            // 任一端断开即结束
+        } finally {
+            delayed.add(Packet.END);
+            close(from, to);
+        }
+    }
+
+    private static void write(BlockingQueue<Packet> delayed, Socket to, Socket from) {
+        try (OutputStream out = to.getOutputStream()) {
+            while (true) {
+                Packet packet = delayed.take();
+                if (packet == Packet.END) {
+                    return;
+                }
+                long wait = packet.dueNanos - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                out.write(packet.bytes);
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // 任一端断开即结束
+        } finally {
+            close(from, to);
+        }
+    }
+
+    private static void close(Socket... sockets) {
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static class Packet {
+
+        private static final Packet END = new Packet(0, new byte[0]);
+
+        private final long dueNanos;
+
+        private final byte[] bytes;
+
+        Packet(long dueNanos, byte[] bytes) {
+            this.dueNanos = dueNanos;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.uestc.weglas.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.uestc.weglas.core.stream.StreamChatAccumulator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.uestc.weglas.core.model.BizConstants.STREAM_CHAT_BUFFER_SIZE;
+
+/**
+ * 流式响应的解码累积，一次调用处理一个完整回答
+ * chunk按字节切分，中文字符会跨chunk；baseline为逐chunk转String再拼接。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamChatAccumulatorBenchmark {
+
+    /**
+     * 每个chunk的字节数
+     */
+    @Param({"16", "256"})
+    private int chunkSize;
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    private List<byte[]> chunks;
+
+    @Setup
+    public void setup() {
+        byte[] bytes = BenchmarkData.assistantText().getBytes(StandardCharsets.UTF_8);
+        chunks = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            chunks.add(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + chunkSize)));
+        }
+    }
+
+    @Benchmark
+    public String accumulate(Blackhole blackhole) {
+        StreamChatAccumulator accumulator = new StreamChatAccumulator(STREAM_CHAT_BUFFER_SIZE);
+        for (byte[] chunk : chunks) {
+            blackhole.consume(accumulator.decode(bufferFactory.wrap(chunk)));
+        }
+        return accumulator.content();
+    }
+
+    /**
+     * 逐chunk解码为String再拼接，跨chunk的字符会被替换为乱码，只作为开销参照
+     */
+    @Benchmark
+    public String accumulateBaseline(Blackhole blackhole) {
+        StringBuilder builder = new StringBuilder();
+        for (byte[] chunk : chunks) {
+            DataBuffer buffer = bufferFactory.wrap(chunk);
+            String text = StandardCharsets.UTF_8.decode(buffer.asByteBuffer()).toString();
+            DataBufferUtils.release(buffer);
+            builder.append(text);
+            blackhole.consume(text);
+        }
+        return builder.toString();
+    }
+}
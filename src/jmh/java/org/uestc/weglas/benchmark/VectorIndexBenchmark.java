@@ -0,0 +1,77 @@
+package org.uestc.weglas.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uestc.weglas.core.memory.OffHeapVectorIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 堆外向量索引的会话内召回
+ * 索引中有多个会话，只扫描被召回会话的向量；chats为该会话的聊天数。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorIndexBenchmark {
+
+    private static final int DIMENSION = 256;
+
+    private static final int CONVERSATIONS = 50;
+
+    @Param({"200", "2000"})
+    private int chats;
+
+    private OffHeapVectorIndex index;
+
+    private float[] query;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        index = new OffHeapVectorIndex(DIMENSION, chats * CONVERSATIONS);
+        int chatId = 1;
+        for (int i = 0; i < chats; i++) {
+            for (int conversationId = 1; conversationId <= CONVERSATIONS; conversationId++) {
+                index.add(conversationId, chatId++, unitVector(random));
+            }
+        }
+        query = unitVector(random);
+    }
+
+    @Benchmark
+    public List<OffHeapVectorIndex.Neighbor> search() {
+        return index.search(1, query, 4, null, 0f);
+    }
+
+    private static float[] unitVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
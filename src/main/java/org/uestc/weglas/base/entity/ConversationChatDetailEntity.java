@@ -40,6 +40,11 @@ public class ConversationChatDetailEntity extends ToString {
 
   private String ext;
 
+  /**
+   * ext读出后未修改，更新时不写ext
+   */
+  private boolean extUnchanged;
+
   private Date gmtCreate;
 
   private Date gmtModified;
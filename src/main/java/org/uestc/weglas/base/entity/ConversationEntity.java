@@ -35,8 +35,18 @@ public class ConversationEntity extends ToString {
     private String title;
     private String llmModel;
 
+    /**
+     * 绑定的设备id
+     */
+    private String deviceId;
+
     private String ext;
 
+    /**
+     * ext读出后未修改，更新时不写ext
+     */
+    private boolean extUnchanged;
+
     private Date gmtCreate;
 
     private Date gmtModified;
@@ -1,13 +1,15 @@
 package org.uestc.weglas.base.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.stereotype.Component;
 import org.uestc.weglas.base.entity.ConversationChatDetailEntity;
-import org.uestc.weglas.base.entity.ConversationEntity;
-import org.uestc.weglas.biz.dto.ConversationQuery;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -30,6 +32,87 @@ public interface ConversationChatDetailMapper {
     @Select("SELECT * FROM ai_conversation_chat_detail WHERE conversation_id = #{conversationId} order by gmt_create")
     List<ConversationChatDetailEntity> selectByConversationId(@Param("conversationId") Integer conversationId);
 
+    /**
+     * 根据id查询
+     *
+     * @param id 主键id
+     * @return 当前id的聊天，不存在则是 {@code null}
+     */
+    @Select("SELECT * FROM ai_conversation_chat_detail WHERE id = #{id}")
+    ConversationChatDetailEntity selectById(@Param("id") Integer id);
+
+    /**
+     * 根据id批量查询
+     *
+     * @param ids 主键id，不能为空
+     * @return 存在的聊天，顺序不保证
+     */
+    @Select("<script>" +
+            "SELECT * FROM ai_conversation_chat_detail WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<ConversationChatDetailEntity> selectByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * 按 (gmt_create, id) 倒序查询最近的聊天，游标为空时从最新一条开始
+     *
+     * @param conversationId 会话id
+     * @param gmtCreate      游标聊天的创建时间
+     * @param id             游标聊天的id
+     * @param limit          查询条数
+     * @return 倒序的聊天列表
+     */
+    @Select("<script>" +
+            "SELECT * FROM ai_conversation_chat_detail WHERE conversation_id = #{conversationId} " +
+            "<if test='gmtCreate != null and id != null'> " +
+            "AND (gmt_create &lt; #{gmtCreate} OR (gmt_create = #{gmtCreate} AND id &lt; #{id})) </if>" +
+            "ORDER BY gmt_create DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<ConversationChatDetailEntity> selectRecentByConversationId(@Param("conversationId") Integer conversationId,
+                                                                    @Param("gmtCreate") Date gmtCreate,
+                                                                    @Param("id") Integer id,
+                                                                    @Param("limit") int limit);
+
+    /**
+     * 按 (gmt_create, id) 倒序查询游标之前的聊天，可限定下界
+     *
+     * @param conversationId  会话id
+     * @param beforeGmtCreate 上界游标的创建时间，不含游标本身
+     * @param beforeId        上界游标的id
+     * @param fromGmtCreate   下界游标的创建时间，含游标本身，为空时不限制
+     * @param fromId          下界游标的id
+     * @param limit           查询条数
+     * @return 倒序的聊天列表
+     */
+    @Select("<script>" +
+            "SELECT * FROM ai_conversation_chat_detail WHERE conversation_id = #{conversationId} " +
+            "AND (gmt_create &lt; #{beforeGmtCreate} OR (gmt_create = #{beforeGmtCreate} AND id &lt; #{beforeId})) " +
+            "<if test='fromGmtCreate != null and fromId != null'> " +
+            "AND (gmt_create &gt; #{fromGmtCreate} OR (gmt_create = #{fromGmtCreate} AND id &gt;= #{fromId})) </if>" +
+            "ORDER BY gmt_create DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<ConversationChatDetailEntity> selectRangeByConversationId(@Param("conversationId") Integer conversationId,
+                                                                   @Param("beforeGmtCreate") Date beforeGmtCreate,
+                                                                   @Param("beforeId") Integer beforeId,
+                                                                   @Param("fromGmtCreate") Date fromGmtCreate,
+                                                                   @Param("fromId") Integer fromId,
+                                                                   @Param("limit") int limit);
+
+    /**
+     * 按 (conversation_id, gmt_create, id) 顺序流式读取聊天，用于导出，顺序与索引一致不需要排序
+     *
+     * @param conversationId 会话id，为空时读取全部
+     * @return 游标，用完必须关闭
+     * @see ConversationMapper#scanById
+     */
+    @Select("<script>" +
+            "SELECT * FROM ai_conversation_chat_detail " +
+            "<if test='conversationId != null'> WHERE conversation_id = #{conversationId} </if>" +
+            "ORDER BY conversation_id, gmt_create, id" +
+            "</script>")
+    @Options(fetchSize = Integer.MIN_VALUE)
+    Cursor<ConversationChatDetailEntity> scanByConversationId(@Param("conversationId") Integer conversationId);
+
     /**
      * 保存
      *
@@ -38,6 +121,22 @@ public interface ConversationChatDetailMapper {
      */
     int insert(ConversationChatDetailEntity entity);
 
+    /**
+     * 多行批量保存，按顺序回填id
+     *
+     * @param entities 聊天列表
+     * @return 写入行数
+     */
+    int insertBatch(List<ConversationChatDetailEntity> entities);
+
+    /**
+     * 导入，多行批量保存，保留创建和修改时间，不回填id
+     *
+     * @param entities 聊天列表
+     * @return 写入行数
+     */
+    int importBatch(List<ConversationChatDetailEntity> entities);
+
     /**
      * @param entity
      */
@@ -50,16 +149,4 @@ public interface ConversationChatDetailMapper {
      * @return 成功 - {@code 1} 失败 - {@code 0}
      */
     int deleteById(@Param("id") Integer id);
-
-    @Select("<script>" +
-            "SELECT * FROM ai_conversation " +
-            "WHERE 1=1 " +
-            "<if test='query.id != null and query.id != \"\"'> " +
-            "AND id = #{query.id} </if>" +
-            "<if test='query.title != null and query.title != \"\"'> " +
-            "AND title = #{query.title} </if>" +
-            "order by gmt_modified DESC" +
-            "</script>")
-    List<ConversationEntity> queryByConditions(@Param("query") ConversationQuery query);
-
 }
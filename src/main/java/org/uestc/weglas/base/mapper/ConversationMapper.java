@@ -1,12 +1,16 @@
 package org.uestc.weglas.base.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.stereotype.Component;
 import org.uestc.weglas.base.entity.ConversationEntity;
 import org.uestc.weglas.biz.dto.ConversationQuery;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -29,6 +33,24 @@ public interface ConversationMapper {
     @Select("SELECT * FROM ai_conversation order by gmt_modified DESC")
     List<ConversationEntity> selectAll();
 
+    /**
+     * 按 (gmt_modified, id) 游标分页查询，不查询 ext 大字段
+     *
+     * @param gmtModified 上一页最后一条的修改时间，为空表示第一页
+     * @param id          上一页最后一条的id
+     * @param limit       查询条数
+     * @return 会话列表
+     */
+    @Select("<script>" +
+            "SELECT id, title, llm_model, gmt_create, gmt_modified FROM ai_conversation " +
+            "<if test='gmtModified != null and id != null'> " +
+            "WHERE gmt_modified &lt; #{gmtModified} OR (gmt_modified = #{gmtModified} AND id &lt; #{id}) </if>" +
+            "ORDER BY gmt_modified DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<ConversationEntity> selectPageByCursor(@Param("gmtModified") Date gmtModified,
+                                                @Param("id") Integer id,
+                                                @Param("limit") int limit);
+
     /**
      * 根据id查询
      *
@@ -38,6 +60,31 @@ public interface ConversationMapper {
     @Select("SELECT * FROM ai_conversation WHERE id = #{id}")
     ConversationEntity selectById(@Param("id") Integer id);
 
+    /**
+     * 根据设备id查询
+     *
+     * @param deviceId 设备id
+     * @return 设备绑定的会话，不存在则是 {@code null}
+     */
+    @Select("SELECT * FROM ai_conversation WHERE device_id = #{deviceId}")
+    ConversationEntity selectByDeviceId(@Param("deviceId") String deviceId);
+
+    /**
+     * 按id顺序流式读取会话，用于导出
+     * fetchSize为 {@link Integer#MIN_VALUE} 时mysql驱动逐行读取，不会把结果集全部加载到内存；
+     * 读取期间该连接不能执行其他语句。
+     *
+     * @param id 会话id，为空时读取全部
+     * @return 游标，用完必须关闭
+     */
+    @Select("<script>" +
+            "SELECT * FROM ai_conversation " +
+            "<if test='id != null'> WHERE id = #{id} </if>" +
+            "ORDER BY id" +
+            "</script>")
+    @Options(fetchSize = Integer.MIN_VALUE)
+    Cursor<ConversationEntity> scanById(@Param("id") Integer id);
+
     /**
      * 保存
      *
@@ -46,6 +93,14 @@ public interface ConversationMapper {
      */
     int insert(ConversationEntity entity);
 
+    /**
+     * 导入，保留创建和修改时间
+     *
+     * @param entity 会话
+     * @return 成功 - {@code 1} 失败 - {@code 0}
+     */
+    int importConversation(ConversationEntity entity);
+
     /**
      * @param entity
      */
@@ -59,6 +114,13 @@ public interface ConversationMapper {
      */
     void updateGmtModifiedById(@Param("id") Integer id);
 
+    /**
+     * 批量更新修改时间
+     *
+     * @param ids 会话id
+     */
+    void updateGmtModifiedByIds(@Param("ids") Collection<Integer> ids);
+
     /**
      * 删除
      *
@@ -0,0 +1,102 @@
+package org.uestc.weglas.base.transfer;
+
+import com.alibaba.fastjson2.JSON;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.base.entity.ConversationChatDetailEntity;
+import org.uestc.weglas.base.entity.ConversationEntity;
+import org.uestc.weglas.base.mapper.ConversationChatDetailMapper;
+import org.uestc.weglas.base.mapper.ConversationMapper;
+import org.uestc.weglas.biz.dto.TransferRecord;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.log.LogUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 会话导出
+ * 会话和聊天各用一个流式游标按会话id顺序读取，归并后逐行写出ndjson，内存占用与数据量无关。
+ * 不经过model转换，ext按db中的原始字符串输出。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class ConversationExporter {
+
+    private static final Logger logger = LogManager.getLogger(ConversationExporter.class);
+
+    private static final int LINE_SEPARATOR = '\n';
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    /**
+     * 输出缓冲区大小，单位字节
+     */
+    @Value("${spring.ai.transfer.export-buffer-size:65536}")
+    private int bufferSize;
+
+    /**
+     * 导出为ndjson，写完后flush，不关闭out
+     *
+     * @param conversationId 会话id，为空时导出全部会话
+     * @param out            输出流
+     * @return 导出的行数
+     */
+    public long export(Integer conversationId, OutputStream out) {
+        long start = System.currentTimeMillis();
+        long conversations = 0;
+        long chats = 0;
+        // mysql流式读取期间同一连接不能执行其他语句，两个游标各自打开session，各占一个连接
+        try (SqlSession conversationSession = sqlSessionFactory.openSession();
+             SqlSession chatSession = sqlSessionFactory.openSession();
+             Cursor<ConversationEntity> conversationCursor = conversationSession
+                     .getMapper(ConversationMapper.class).scanById(conversationId);
+             Cursor<ConversationChatDetailEntity> chatCursor = chatSession
+                     .getMapper(ConversationChatDetailMapper.class).scanByConversationId(conversationId)) {
+
+            OutputStream buffered = new BufferedOutputStream(out, bufferSize);
+            PeekingIterator<ConversationChatDetailEntity> chatIterator = Iterators.peekingIterator(
+                    chatCursor.iterator());
+            for (ConversationEntity conversation : conversationCursor) {
+                writeLine(buffered, TransferRecord.of(conversation));
+                conversations++;
+
+                // 两个游标都按会话id升序，会话已删除的聊天跳过
+                while (chatIterator.hasNext() && chatIterator.peek().getConversationId() <= conversation.getId()) {
+                    ConversationChatDetailEntity chat = chatIterator.next();
+                    if (chat.getConversationId().equals(conversation.getId())) {
+                        writeLine(buffered, TransferRecord.of(chat));
+                        chats++;
+                    }
+                }
+            }
+            buffered.flush();
+        } catch (IOException e) {
+            LogUtil.warn(logger, e, "conversation export aborted,conversationId=" + conversationId
+                    + ",conversations=" + conversations + ",chats=" + chats);
+            throw new ManagerBizException("conversation export failed", e);
+        }
+
+        LogUtil.info(logger, "conversation export finished,conversationId=", conversationId,
+                ",conversations=", conversations, ",chats=", chats,
+                ",cost=", System.currentTimeMillis() - start, "ms");
+        return conversations + chats;
+    }
+
+    private static void writeLine(OutputStream out, TransferRecord record) throws IOException {
+        JSON.writeTo(out, record);
+        out.write(LINE_SEPARATOR);
+    }
+}
@@ -0,0 +1,173 @@
+package org.uestc.weglas.base.transfer;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
+import org.apache.commons.lang.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.base.entity.ConversationChatDetailEntity;
+import org.uestc.weglas.base.entity.ConversationEntity;
+import org.uestc.weglas.base.mapper.ConversationChatDetailMapper;
+import org.uestc.weglas.base.mapper.ConversationMapper;
+import org.uestc.weglas.biz.dto.ImportResult;
+import org.uestc.weglas.biz.dto.TransferRecord;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.log.LogUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 会话导入
+ * 逐行读取 {@link ConversationExporter} 导出的ndjson，会话逐条写入以取得新id，
+ * 聊天按新会话id改写后多行批量写入。按行数或内容大小凑批，避免单条语句超过max_allowed_packet。
+ * 每批单独提交，中途失败时已写入的部分不回滚，返回异常。
+ * 设备id唯一，设备已绑定其他会话时导入的会话不绑定设备，计入结果的设备冲突数，重复导入不会失败。
+ * 导入直接写db，不经过检索索引和语义记忆，需要时手动重建检索索引，语义记忆在会话第一次召回时补齐。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class ConversationImporter {
+
+    private static final Logger logger = LogManager.getLogger(ConversationImporter.class);
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Autowired
+    private ConversationChatDetailMapper conversationChatDetailMapper;
+
+    /**
+     * 单批最大行数
+     */
+    @Value("${spring.ai.transfer.import-batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 单批内容和ext的最大字符数
+     */
+    @Value("${spring.ai.transfer.import-batch-chars:1000000}")
+    private long batchChars;
+
+    /**
+     * 导入，聊天必须紧跟在所属会话之后
+     *
+     * @param in ndjson输入流，不会关闭
+     */
+    public ImportResult importFrom(InputStream in) {
+        long start = System.currentTimeMillis();
+        ImportResult result = new ImportResult();
+        Batch batch = new Batch(batchSize);
+
+        Integer sourceConversationId = null;
+        Integer targetConversationId = null;
+        long lineNumber = 0;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+                TransferRecord record = parse(line, lineNumber);
+
+                if (TransferRecord.RECORD_CONVERSATION.equals(record.getRecord())) {
+                    // 上一个会话的聊天先落库
+                    flush(batch, result);
+                    ConversationEntity entity = record.toConversationEntity();
+                    importConversation(entity, result);
+                    sourceConversationId = record.getId();
+                    targetConversationId = entity.getId();
+                    result.setConversations(result.getConversations() + 1);
+                } else if (TransferRecord.RECORD_CHAT.equals(record.getRecord())
+                        && sourceConversationId != null
+                        && sourceConversationId.equals(record.getConversationId())) {
+                    batch.add(record.toChatEntity(targetConversationId));
+                    if (batch.size() >= batchSize || batch.chars >= batchChars) {
+                        flush(batch, result);
+                    }
+                } else {
+                    LogUtil.warn(logger, "conversation import record illegal,line=", lineNumber,
+                            ",record=", record.getRecord(), ",conversationId=", record.getConversationId());
+                    throw new ManagerBizException(ResultEnum.PARAMETER_ILLEGAL);
+                }
+            }
+            flush(batch, result);
+        } catch (IOException e) {
+            throw new ManagerBizException("conversation import failed,line=" + lineNumber, e);
+        }
+
+        result.setElapsedMillis(System.currentTimeMillis() - start);
+        LogUtil.info(logger, "conversation import finished,", result);
+        return result;
+    }
+
+    private void importConversation(ConversationEntity entity, ImportResult result) {
+        try {
+            conversationMapper.importConversation(entity);
+        } catch (DuplicateKeyException e) {
+            // 只有device_id唯一，设备已有会话时保留现有绑定，导入的会话不绑定设备
+            LogUtil.warn(logger, "conversation import device conflict,deviceId=", entity.getDeviceId());
+            entity.setDeviceId(null);
+            conversationMapper.importConversation(entity);
+            result.setDeviceConflicts(result.getDeviceConflicts() + 1);
+        }
+    }
+
+    private TransferRecord parse(String line, long lineNumber) {
+        try {
+            return JSON.parseObject(line, TransferRecord.class);
+        } catch (JSONException e) {
+            LogUtil.warn(logger, "conversation import line illegal,line=", lineNumber);
+            throw new ManagerBizException(ResultEnum.PARAMETER_ILLEGAL);
+        }
+    }
+
+    private void flush(Batch batch, ImportResult result) {
+        if (batch.size() == 0) {
+            return;
+        }
+        conversationChatDetailMapper.importBatch(batch.entities);
+        result.setChats(result.getChats() + batch.size());
+        result.setBatches(result.getBatches() + 1);
+        batch.clear();
+    }
+
+    private static class Batch {
+
+        private final List<ConversationChatDetailEntity> entities;
+
+        private long chars;
+
+        Batch(int capacity) {
+            entities = new ArrayList<>(capacity);
+        }
+
+        void add(ConversationChatDetailEntity entity) {
+            entities.add(entity);
+            chars += StringUtils.length(entity.getContent()) + StringUtils.length(entity.getExt());
+        }
+
+        int size() {
+            return entities.size();
+        }
+
+        void clear() {
+            entities.clear();
+            chars = 0;
+        }
+    }
+}
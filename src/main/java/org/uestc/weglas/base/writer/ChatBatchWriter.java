@@ -0,0 +1,295 @@
+package org.uestc.weglas.base.writer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.uestc.weglas.base.entity.ConversationChatDetailEntity;
+import org.uestc.weglas.base.mapper.ConversationChatDetailMapper;
+import org.uestc.weglas.base.mapper.ConversationMapper;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.log.LogUtil;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 聊天批量写入
+ * 写入请求进入有界队列，由单个刷盘线程合并为多行insert，
+ * 同一批次内同一会话的gmt_modified更新合并为一次。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class ChatBatchWriter {
+
+    private static final Logger logger = LogManager.getLogger(ChatBatchWriter.class);
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Autowired
+    private ConversationChatDetailMapper conversationChatDetailMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${spring.ai.chat-writer.mode:GROUP_COMMIT}")
+    private ChatWriteMode mode;
+
+    /**
+     * 单批最大行数
+     */
+    @Value("${spring.ai.chat-writer.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * 第一条进入批次后最多等待多久开始刷盘，单位毫秒
+     */
+    @Value("${spring.ai.chat-writer.max-lag:10}")
+    private long maxLag;
+
+    @Value("${spring.ai.chat-writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /**
+     * GROUP_COMMIT模式等待落库的超时时间，单位毫秒
+     * 超时只是调用方不再等待，已入队的聊天仍会落库，调用方不应据此重试写入
+     */
+    @Value("${spring.ai.chat-writer.await-timeout:5000}")
+    private long awaitTimeout;
+
+    private BlockingQueue<PendingChat> queue;
+
+    private Thread flusher;
+
+    private volatile boolean running;
+
+    private final AtomicLong flushedRows = new AtomicLong();
+
+    private final AtomicLong flushedBatches = new AtomicLong();
+
+    private final AtomicLong failedRows = new AtomicLong();
+
+    private final AtomicLong coalescedUpdates = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (mode == ChatWriteMode.DIRECT) {
+            return;
+        }
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        flusher = new Thread(this::flushLoop, "chat-batch-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 关闭时先停止接收，再把队列中剩余的数据刷完
+     */
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (flusher == null) {
+            return;
+        }
+        flusher.interrupt();
+        flusher.join(awaitTimeout);
+
+        // 刷盘线程退出后才入队的，由关闭线程写入，保证每个future都会完成
+        List<PendingChat> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        if (!leftovers.isEmpty()) {
+            LogUtil.warn(logger, "chat writer flush leftovers on shutdown,size=" + leftovers.size());
+            flush(leftovers);
+        }
+    }
+
+    /**
+     * 写入聊天，写入成功后回填entity的id。队列模式只入队不等待，
+     * 调用方在返回的future上注册完成回调后再调用 {@link #await(CompletableFuture)}
+     *
+     * @param entities 同一批提交的聊天，按顺序写入
+     * @return 全部落库后完成；DIRECT模式返回时已完成
+     */
+    public CompletableFuture<Void> write(List<ConversationChatDetailEntity> entities) {
+        if (mode == ChatWriteMode.DIRECT || !running) {
+            writeDirect(entities);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(entities.size());
+        for (int i = 0; i < entities.size(); i++) {
+            PendingChat pending = new PendingChat(entities.get(i));
+            if (!queue.offer(pending)) {
+                // 队列已满，剩余部分由调用线程直接写入，形成背压
+                LogUtil.warn(logger, "chat writer queue full,write directly,depth=" + queue.size());
+                writeDirect(entities.subList(i, entities.size()));
+                break;
+            }
+            if (!running && queue.remove(pending)) {
+                // 入队时恰好开始关闭，刷盘线程和关闭线程可能都已取完队列，取回后直接写入
+                writeDirect(Collections.singletonList(pending.entity));
+                pending.future.complete(null);
+            }
+            futures.add(pending.future);
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * GROUP_COMMIT模式等待落库完成，其他模式直接返回。
+     * 等待超时抛出异常时聊天仍在队列中，之后会落库，已注册的回调照常执行
+     *
+     * @param written {@link #write(List)} 返回的future
+     */
+    public void await(CompletableFuture<Void> written) {
+        if (mode != ChatWriteMode.GROUP_COMMIT) {
+            return;
+        }
+        try {
+            written.get(awaitTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerBizException(ResultEnum.SYSTEM_EXCEPTION);
+        } catch (ExecutionException e) {
+            throw new ManagerBizException("chat write failed", e);
+        } catch (TimeoutException e) {
+            // 仍在队列中，之后会落库
+            throw new ManagerBizException("chat write timeout, still queued and may be written later", e);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    public long getFlushedRows() {
+        return flushedRows.get();
+    }
+
+    public long getFlushedBatches() {
+        return flushedBatches.get();
+    }
+
+    public long getFailedRows() {
+        return failedRows.get();
+    }
+
+    public long getCoalescedUpdates() {
+        return coalescedUpdates.get();
+    }
+
+    private void writeDirect(List<ConversationChatDetailEntity> entities) {
+        transactionTemplate.execute(status -> {
+            doWrite(entities);
+            return null;
+        });
+    }
+
+    private void doWrite(List<ConversationChatDetailEntity> entities) {
+        Set<Integer> conversationIds = new LinkedHashSet<>();
+        for (ConversationChatDetailEntity entity : entities) {
+            conversationIds.add(entity.getConversationId());
+        }
+        conversationMapper.updateGmtModifiedByIds(conversationIds);
+        conversationChatDetailMapper.insertBatch(entities);
+
+        coalescedUpdates.addAndGet(entities.size() - conversationIds.size());
+    }
+
+    private void flushLoop() {
+        List<PendingChat> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingChat first = running ? queue.take() : queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // 凑批：直到达到批次大小或第一条等待超过max-lag
+                long deadline = first.enqueueTime + TimeUnit.MILLISECONDS.toNanos(maxLag);
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    PendingChat next = wait > 0 && running ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 关闭时被中断，继续把已取出和剩余的数据刷完
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingChat> batch) {
+        List<ConversationChatDetailEntity> entities = new ArrayList<>(batch.size());
+        for (PendingChat pending : batch) {
+            entities.add(pending.entity);
+        }
+
+        try {
+            writeDirect(entities);
+            flushedRows.addAndGet(batch.size());
+            flushedBatches.incrementAndGet();
+            for (PendingChat pending : batch) {
+                pending.future.complete(null);
+            }
+            return;
+        } catch (RuntimeException e) {
+            LogUtil.error(logger, e, "chat batch write failed,retry one by one,size=" + batch.size());
+        }
+
+        // 批量失败时逐条重试，隔离出错的行
+        for (PendingChat pending : batch) {
+            try {
+                writeDirect(Collections.singletonList(pending.entity));
+                flushedRows.incrementAndGet();
+                pending.future.complete(null);
+            } catch (RuntimeException e) {
+                failedRows.incrementAndGet();
+                LogUtil.error(logger, e, "chat write failed,conversationId=" + pending.entity.getConversationId());
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class PendingChat {
+
+        private final ConversationChatDetailEntity entity;
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private final long enqueueTime = System.nanoTime();
+
+        PendingChat(ConversationChatDetailEntity entity) {
+            this.entity = entity;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.uestc.weglas.base.writer;
+
+/**
+ * 聊天写入模式
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public enum ChatWriteMode {
+
+    /**
+     * 调用线程直接写入
+     */
+    DIRECT,
+
+    /**
+     * 进入队列与其他请求合并批量写入，调用方等待落库完成
+     */
+    GROUP_COMMIT,
+
+    /**
+     * 进入队列与其他请求合并批量写入，调用方不等待，最大延迟由max-lag控制。
+     * 返回给调用方的聊天id为空，不能用作翻页游标；检索索引和语义记忆在落库回填id后写入，
+     * 上下文组装的召回边界和滚动摘要只使用从db加载的聊天id
+     */
+    WRITE_BEHIND,
+}
@@ -0,0 +1,31 @@
+package org.uestc.weglas.biz.dto;
+
+import lombok.Data;
+import org.uestc.weglas.base.ToString;
+
+import java.util.Date;
+
+/**
+ * 命中的一条聊天
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+public class ChatSearchHit extends ToString {
+
+    private Integer chatId;
+
+    private Integer conversationId;
+
+    private String role;
+
+    private float score;
+
+    /**
+     * 命中片段，已做html转义，命中词用 &lt;em&gt; 标出
+     */
+    private String snippet;
+
+    private Date gmtCreate;
+}
@@ -0,0 +1,27 @@
+package org.uestc.weglas.biz.dto;
+
+import lombok.Data;
+import org.uestc.weglas.base.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 聊天检索结果
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+public class ChatSearchResult extends ToString {
+
+    /**
+     * 命中的聊天总数
+     */
+    private long totalHits;
+
+    /**
+     * 得分最高的若干聊天按会话分组
+     */
+    private List<ConversationSearchHit> conversations = new ArrayList<>();
+}
@@ -0,0 +1,55 @@
+package org.uestc.weglas.biz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang.StringUtils;
+import org.uestc.weglas.base.ToString;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.util.exception.ManagerBizException;
+
+import java.util.Date;
+
+/**
+ * 会话列表游标，按 (gmt_modified, id) 倒序定位
+ * 格式：{gmtModified毫秒}_{id}
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConversationCursor extends ToString {
+
+    private static final String SEPARATOR = "_";
+
+    private Date gmtModified;
+
+    private Integer id;
+
+    public String encode() {
+        return gmtModified.getTime() + SEPARATOR + id;
+    }
+
+    /**
+     * 解析游标
+     *
+     * @param cursor 游标串，为空表示第一页
+     * @return 游标，第一页返回 {@code null}
+     */
+    public static ConversationCursor decode(String cursor) {
+        if (StringUtils.isBlank(cursor)) {
+            return null;
+        }
+        String[] parts = StringUtils.split(cursor, SEPARATOR);
+        if (parts.length != 2) {
+            throw new ManagerBizException(ResultEnum.PARAMETER_ILLEGAL);
+        }
+        try {
+            return new ConversationCursor(new Date(Long.parseLong(parts[0])), Integer.valueOf(parts[1]));
+        } catch (NumberFormatException e) {
+            throw new ManagerBizException(ResultEnum.PARAMETER_ILLEGAL);
+        }
+    }
+}
@@ -23,4 +23,9 @@ public class ConversationQuery extends ToString {
     private int pageNum = 1;
 
     private int pageSize = 10;
+
+    /**
+     * 游标分页使用，参见 {@link ConversationCursor}
+     */
+    private String cursor;
 }
@@ -0,0 +1,26 @@
+package org.uestc.weglas.biz.dto;
+
+import lombok.Data;
+import org.uestc.weglas.base.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 命中的会话，按会话内得分最高的聊天排序
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+public class ConversationSearchHit extends ToString {
+
+    private Integer conversationId;
+
+    private float score;
+
+    /**
+     * 会话内命中的聊天，按得分排序
+     */
+    private List<ChatSearchHit> chats = new ArrayList<>();
+}
@@ -0,0 +1,33 @@
+package org.uestc.weglas.biz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.uestc.weglas.base.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 游标分页结果
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CursorPage<T> extends ToString {
+
+    @Builder.Default
+    private List<T> values = new ArrayList<>();
+
+    /**
+     * 下一页游标，没有更多数据时为 {@code null}
+     */
+    private String nextCursor;
+
+    private boolean hasMore;
+}
@@ -0,0 +1,38 @@
+package org.uestc.weglas.biz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.uestc.weglas.base.ToString;
+
+/**
+ * 发往设备应答主题的消息，一次请求对应若干CHUNK和一条DONE或ERROR
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DeviceChatReply extends ToString {
+
+    public static final String TYPE_CHUNK = "CHUNK";
+    public static final String TYPE_DONE = "DONE";
+    public static final String TYPE_ERROR = "ERROR";
+
+    private String correlationId;
+
+    /**
+     * 同一请求内从0递增的序号，设备据此排序和去重
+     */
+    private long seq;
+
+    private String type;
+
+    /**
+     * CHUNK为文本片段，ERROR为错误码
+     */
+    private String content;
+}
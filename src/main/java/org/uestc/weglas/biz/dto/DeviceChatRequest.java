@@ -0,0 +1,30 @@
+package org.uestc.weglas.biz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.uestc.weglas.base.ToString;
+
+/**
+ * 设备通过mqtt发送的聊天请求
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DeviceChatRequest extends ToString {
+
+    /**
+     * 请求关联id，原样带回到每条应答中，为空时由服务端生成
+     */
+    private String correlationId;
+
+    /**
+     * 用户输入
+     */
+    private String content;
+}
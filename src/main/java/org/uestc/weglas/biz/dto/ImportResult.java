@@ -0,0 +1,31 @@
+package org.uestc.weglas.biz.dto;
+
+import lombok.Data;
+import org.uestc.weglas.base.ToString;
+
+/**
+ * 会话导入结果
+ * 导入的聊天不写入检索索引和语义记忆，需要检索时重建索引。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+public class ImportResult extends ToString {
+
+    private long conversations;
+
+    private long chats;
+
+    /**
+     * 聊天的批量写入次数
+     */
+    private long batches;
+
+    /**
+     * 设备已绑定其他会话，导入时去掉设备绑定的会话数
+     */
+    private long deviceConflicts;
+
+    private long elapsedMillis;
+}
@@ -0,0 +1,111 @@
+package org.uestc.weglas.biz.dto;
+
+import com.alibaba.fastjson2.annotation.JSONField;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.uestc.weglas.base.ToString;
+import org.uestc.weglas.base.entity.ConversationChatDetailEntity;
+import org.uestc.weglas.base.entity.ConversationEntity;
+
+import java.util.Date;
+
+/**
+ * 会话导出/导入的一行ndjson
+ * 每个会话先输出一行会话，再按时间顺序输出它的聊天；ext保持db中的原始json字符串，不解析。
+ * 时间使用毫秒时间戳，不受两边时区配置影响。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+@NoArgsConstructor
+public class TransferRecord extends ToString {
+
+    public static final String RECORD_CONVERSATION = "conversation";
+    public static final String RECORD_CHAT = "chat";
+
+    /**
+     * 行类型：conversation/chat
+     */
+    private String record;
+
+    /**
+     * 源环境的id，导入时重新生成
+     */
+    private Integer id;
+
+    /**
+     * 聊天所属的源会话id
+     */
+    private Integer conversationId;
+
+    private String title;
+
+    private String llmModel;
+
+    private String deviceId;
+
+    private String role;
+
+    private String type;
+
+    private String content;
+
+    private String ext;
+
+    @JSONField(format = "millis")
+    private Date gmtCreate;
+
+    @JSONField(format = "millis")
+    private Date gmtModified;
+
+    public static TransferRecord of(ConversationEntity entity) {
+        TransferRecord record = new TransferRecord();
+        record.setRecord(RECORD_CONVERSATION);
+        record.setId(entity.getId());
+        record.setTitle(entity.getTitle());
+        record.setLlmModel(entity.getLlmModel());
+        record.setDeviceId(entity.getDeviceId());
+        record.setExt(entity.getExt());
+        record.setGmtCreate(entity.getGmtCreate());
+        record.setGmtModified(entity.getGmtModified());
+        return record;
+    }
+
+    public static TransferRecord of(ConversationChatDetailEntity entity) {
+        TransferRecord record = new TransferRecord();
+        record.setRecord(RECORD_CHAT);
+        record.setId(entity.getId());
+        record.setConversationId(entity.getConversationId());
+        record.setRole(entity.getRole());
+        record.setType(entity.getType());
+        record.setContent(entity.getContent());
+        record.setExt(entity.getExt());
+        record.setGmtCreate(entity.getGmtCreate());
+        record.setGmtModified(entity.getGmtModified());
+        return record;
+    }
+
+    public ConversationEntity toConversationEntity() {
+        ConversationEntity entity = new ConversationEntity();
+        entity.setTitle(title);
+        entity.setLlmModel(llmModel);
+        entity.setDeviceId(deviceId);
+        entity.setExt(ext);
+        entity.setGmtCreate(gmtCreate);
+        entity.setGmtModified(gmtModified);
+        return entity;
+    }
+
+    public ConversationChatDetailEntity toChatEntity(Integer targetConversationId) {
+        ConversationChatDetailEntity entity = new ConversationChatDetailEntity();
+        entity.setConversationId(targetConversationId);
+        entity.setRole(role);
+        entity.setType(type);
+        entity.setContent(content);
+        entity.setExt(ext);
+        entity.setGmtCreate(gmtCreate);
+        entity.setGmtModified(gmtModified);
+        return entity;
+    }
+}
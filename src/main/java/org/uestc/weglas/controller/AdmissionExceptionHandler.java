@@ -0,0 +1,37 @@
+package org.uestc.weglas.controller;
+
+import com.alibaba.fastjson2.JSON;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.util.BaseResult;
+import org.uestc.weglas.util.exception.RateLimitedException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 准入拒绝转换为 429 + Retry-After
+ * 直接写出json，不经过内容协商，sse接口被拒绝时同样返回json错误体
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@RestControllerAdvice
+public class AdmissionExceptionHandler {
+
+    @ExceptionHandler(RateLimitedException.class)
+    public void handleRateLimited(RateLimitedException e, HttpServletResponse response) throws IOException {
+        // Retry-After 单位为秒，向上取整
+        long retryAfterSeconds = Math.max(1, (e.getRetryAfterMillis() + 999) / 1000);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        response.getOutputStream().write(JSON.toJSONString(BaseResult.fail(ResultEnum.RATE_LIMITED))
+                .getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,22 +1,51 @@
 package org.uestc.weglas.controller;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.uestc.weglas.base.transfer.ConversationExporter;
+import org.uestc.weglas.base.transfer.ConversationImporter;
+import org.uestc.weglas.biz.dto.ChatSearchResult;
+import org.uestc.weglas.biz.dto.ConversationQuery;
+import org.uestc.weglas.biz.dto.CursorPage;
+import org.uestc.weglas.biz.dto.ImportResult;
+import org.uestc.weglas.core.admission.ChatAdmission;
 import org.uestc.weglas.core.builder.ConversationChatBuilder;
+import org.uestc.weglas.core.enums.ResultEnum;
 import org.uestc.weglas.core.model.Conversation;
 import org.uestc.weglas.core.model.ConversationChatDetail;
+import org.uestc.weglas.core.search.ChatSearchIndex;
 import org.uestc.weglas.core.service.ChatService;
 import org.uestc.weglas.core.service.ConversationService;
 import org.uestc.weglas.util.BaseResult;
+import org.uestc.weglas.util.exception.AssertUtil;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.log.LogUtil;
 import org.uestc.weglas.util.template.AbstractBizCallback;
 import org.uestc.weglas.util.template.BizTemplate;
 import org.uestc.weglas.util.validator.RequestValidator;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.uestc.weglas.core.model.BizConstants.CHAT_PAGE_SIZE;
+import static org.uestc.weglas.core.model.BizConstants.CONVERSATION_PAGE_SIZE;
+import static org.uestc.weglas.core.model.BizConstants.SEARCH_PAGE_SIZE;
+
 /**
  * @author yingxian.cyx
  * @date Created in 2024/10/11
@@ -25,19 +54,91 @@ import java.util.List;
 @RequestMapping("/conversations")
 public class ConversationController {
 
+    private static final Logger logger = LogManager.getLogger(ConversationController.class);
+
+    private static final String SSE_EVENT_MESSAGE = "message";
+    private static final String SSE_EVENT_DONE = "done";
+    private static final String SSE_EVENT_ERROR = "error";
+
+    /**
+     * 用户标识请求头，未传时按客户端地址限流
+     */
+    private static final String USER_ID_HEADER = "X-User-Id";
+
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
     @Autowired
     private ConversationService conversationService;
 
     @Autowired
     private ChatService chatService;
 
+    @Autowired
+    private ChatAdmission chatAdmission;
+
+    @Autowired
+    private ConversationExporter conversationExporter;
+
+    @Autowired
+    private ConversationImporter conversationImporter;
+
+    @Autowired
+    private ChatSearchIndex chatSearchIndex;
+
+    @Autowired
+    @Qualifier("dbScheduler")
+    private Scheduler dbScheduler;
+
+    @Value("${spring.ai.history-window:20}")
+    private int historyWindow;
+
+    /**
+     * sse心跳间隔，单位毫秒
+     */
+    @Value("${spring.ai.sse.heartbeat-interval:15000}")
+    private long sseHeartbeatInterval;
+
+    /**
+     * 是否信任请求头中的用户标识，只有网关会覆盖该请求头时开启，否则客户端可随意更换以绕过限流
+     */
+    @Value("${spring.ai.admission.trust-user-header:false}")
+    private boolean trustUserHeader;
+
+    /**
+     * 会话列表，只返回最近修改的第一页，翻页使用 {@link #queryPage(String, Integer)}
+     *
+     * @deprecated 使用 /page.json
+     */
+    @Deprecated
     @GetMapping("/list.json")
     public BaseResult<Conversation> queryAll(Model model) {
         return BizTemplate.execute(new AbstractBizCallback<Conversation>() {
             @Override
             public  void execute(BaseResult<Conversation> result) {
-                List<Conversation> conversations = conversationService.queryAll();
-                result.setValues(conversations);
+                ConversationQuery query = ConversationQuery.builder()
+                        .pageSize(CONVERSATION_PAGE_SIZE)
+                        .build();
+                result.setValues(conversationService.queryPage(query).getValues());
+            }
+        });
+    }
+
+    /**
+     * 游标分页查询会话列表
+     *
+     * @param cursor   上一页返回的nextCursor，第一页为空
+     * @param pageSize 分页大小
+     */
+    @GetMapping("/page.json")
+    public BaseResult<CursorPage<Conversation>> queryPage(String cursor, Integer pageSize) {
+        return BizTemplate.execute(new AbstractBizCallback<CursorPage<Conversation>>() {
+            @Override
+            public void execute(BaseResult<CursorPage<Conversation>> result) {
+                ConversationQuery query = ConversationQuery.builder()
+                        .cursor(cursor)
+                        .pageSize(pageSize == null ? CONVERSATION_PAGE_SIZE : pageSize)
+                        .build();
+                result.setData(conversationService.queryPage(query));
             }
         });
     }
@@ -55,9 +156,110 @@ public class ConversationController {
 
     }
 
+    /**
+     * 向前分页加载聊天记录
+     *
+     * @param conversationId 会话id
+     * @param cursor         上一页返回的nextCursor，为空时从最新一条开始
+     * @param pageSize       分页大小
+     */
+    @GetMapping("/chats.json")
+    public BaseResult<CursorPage<ConversationChatDetail>> queryChats(Integer conversationId, String cursor,
+                                                                     Integer pageSize) {
+        return BizTemplate.execute(new AbstractBizCallback<CursorPage<ConversationChatDetail>>() {
+            @Override
+            public void checkParameter() {
+                AssertUtil.notNull(conversationId);
+            }
+
+            @Override
+            public void execute(BaseResult<CursorPage<ConversationChatDetail>> result) {
+                result.setData(conversationService.queryChatPage(conversationId, cursor,
+                        pageSize == null ? CHAT_PAGE_SIZE : pageSize));
+            }
+        });
+    }
+
+    /**
+     * 全文检索聊天内容，返回按会话分组的命中聊天和高亮片段
+     *
+     * @param keyword        关键词，空格分隔的词都要命中
+     * @param conversationId 只检索该会话，为空时检索全部
+     * @param limit          返回的最大聊天数
+     */
+    @GetMapping("/search.json")
+    public BaseResult<ChatSearchResult> search(String keyword, Integer conversationId, Integer limit) {
+        return BizTemplate.execute(new AbstractBizCallback<ChatSearchResult>() {
+            @Override
+            public void checkParameter() {
+                AssertUtil.notBlank(keyword);
+            }
+
+            @Override
+            public void execute(BaseResult<ChatSearchResult> result) {
+                result.setData(chatSearchIndex.search(keyword, conversationId,
+                        limit == null ? SEARCH_PAGE_SIZE : limit));
+            }
+        });
+    }
+
+    /**
+     * 从db重建检索索引，后台执行，已有重建在进行时返回false
+     */
+    @PostMapping("/search/rebuild.json")
+    public BaseResult<Boolean> rebuildSearchIndex() {
+        return BizTemplate.execute(new AbstractBizCallback<Boolean>() {
+            @Override
+            public void execute(BaseResult<Boolean> result) {
+                result.setData(chatSearchIndex.rebuildAsync());
+            }
+        });
+    }
+
+    /**
+     * 导出会话及聊天为ndjson，流式写入响应
+     *
+     * @param conversationId 会话id，为空时导出全部会话
+     */
+    @GetMapping("/export.ndjson")
+    public void exportConversations(Integer conversationId, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=conversations.ndjson");
+        conversationExporter.export(conversationId, response.getOutputStream());
+    }
+
+    /**
+     * 导入 {@link #exportConversations} 导出的ndjson，请求体为ndjson内容，边读边写入
+     */
+    @PostMapping("/import.json")
+    public BaseResult<ImportResult> importConversations(HttpServletRequest request) {
+        return BizTemplate.execute(new AbstractBizCallback<ImportResult>() {
+            @Override
+            public void execute(BaseResult<ImportResult> result) {
+                try {
+                    result.setData(conversationImporter.importFrom(request.getInputStream()));
+                } catch (IOException e) {
+                    throw new ManagerBizException("read import body failed", e);
+                }
+            }
+        });
+    }
+
     @PostMapping("/add.json")
-    public BaseResult<Conversation> addConversation(@RequestBody Conversation conversation) {
+    public BaseResult<Conversation> addConversation(@RequestBody Conversation conversation,
+                                                    HttpServletRequest request) {
+        ChatAdmission.Permit permit = chatAdmission.admit(userIdOf(request), null, false);
+        BaseResult<Conversation> result = null;
+        try {
+            result = doAddConversation(conversation);
+            return result;
+        } finally {
+            permit.release(result == null ? null : result.getResultCode());
+        }
+    }
 
+    private BaseResult<Conversation> doAddConversation(Conversation conversation) {
         return BizTemplate.execute(new AbstractBizCallback<Conversation>() {
             @Override
             public void checkParameter() {
@@ -79,7 +281,20 @@ public class ConversationController {
 
 
     @PostMapping("/addChat.json")
-    public BaseResult<ConversationChatDetail> addChat(@RequestBody ConversationChatDetail chat) {
+    public BaseResult<ConversationChatDetail> addChat(@RequestBody ConversationChatDetail chat,
+                                                      HttpServletRequest request) {
+        // 准入在业务模板之外，拒绝时由AdmissionExceptionHandler返回429
+        ChatAdmission.Permit permit = chatAdmission.admit(userIdOf(request), chat.getConversationId(), false);
+        BaseResult<ConversationChatDetail> result = null;
+        try {
+            result = doAddChat(chat);
+            return result;
+        } finally {
+            permit.release(result == null ? null : result.getResultCode());
+        }
+    }
+
+    private BaseResult<ConversationChatDetail> doAddChat(ConversationChatDetail chat) {
         return BizTemplate.execute(new AbstractBizCallback<ConversationChatDetail>() {
             @Override
             public void checkParameter() {
@@ -97,27 +312,81 @@ public class ConversationController {
     }
 
     @PostMapping("/streamChat.json")
-    public Flux<String> streamChat(@RequestBody ConversationChatDetail chat) {
-        Conversation conversation = conversationService.queryById(chat.getConversationId());
+    public Flux<String> streamChat(@RequestBody ConversationChatDetail chat, HttpServletRequest request) {
+        return admitStream(chat, request, doStreamChat(chat));
+    }
+
+    private Flux<String> doStreamChat(ConversationChatDetail chat) {
+        return Mono.fromCallable(() -> {
+                    Conversation conversation = conversationService.queryRecentById(chat.getConversationId(),
+                            historyWindow);
+
+                    // 写入当前聊天内容到db
+                    conversationService.addChat(chat);
+                    return conversation;
+                })
+                // db操作切换到db调度器
+                .subscribeOn(dbScheduler)
+                // 调用服务，获取流式响应
+                .flatMapMany(conversation -> chatService.streamChat(conversation, chat));
+    }
 
-        // 写入当前聊天内容到db
-        conversationService.addChat(chat);
+    /**
+     * sse方式的流式聊天：每个chunk为一个带递增id的message事件，结束时发送done事件，
+     * 空闲时定期发送心跳注释保持连接。客户端断开时取消订阅，上游模型请求随之取消。
+     */
+    @PostMapping(value = "/streamChat.sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamChatEvents(@RequestBody ConversationChatDetail chat,
+                                                          HttpServletRequest request) {
+        Flux<ServerSentEvent<String>> events = admitStream(chat, request, doStreamChat(chat))
+                .index()
+                .map(tuple -> ServerSentEvent.builder(tuple.getT2())
+                        .id(String.valueOf(tuple.getT1()))
+                        .event(SSE_EVENT_MESSAGE)
+                        .build())
+                .concatWith(Mono.just(ServerSentEvent.<String>builder().event(SSE_EVENT_DONE).data("").build()))
+                .onErrorResume(e -> {
+                    LogUtil.error(logger, e, "stream chat failed,conversationId=" + chat.getConversationId());
+                    return Mono.just(ServerSentEvent.<String>builder()
+                            .event(SSE_EVENT_ERROR)
+                            .data(ResultEnum.INVOKE_FAIL.getCode())
+                            .build());
+                });
 
-        // 调用服务，获取流式响应
-        return chatService.streamChat(conversation, chat);
+        return events.publish(shared -> Flux.merge(shared,
+                Flux.interval(Duration.ofMillis(sseHeartbeatInterval))
+                        .onBackpressureDrop()
+                        .map(i -> ServerSentEvent.<String>builder().comment("heartbeat").build())
+                        .takeUntilOther(shared.then())));
     }
 
 
+    /**
+     * 流式聊天准入：在返回Flux前检查，拒绝时直接返回429；首个chunk作为延迟样本，结束或断开时释放许可
+     */
+    private Flux<String> admitStream(ConversationChatDetail chat, HttpServletRequest request, Flux<String> chunks) {
+        ChatAdmission.Permit permit = chatAdmission.admit(userIdOf(request), chat.getConversationId(), true);
+        return chunks
+                .doOnNext(chunk -> permit.onFirstResponse())
+                .doOnError(permit::onError)
+                .doFinally(permit::release);
+    }
+
+    private String userIdOf(HttpServletRequest request) {
+        String userId = trustUserHeader ? request.getHeader(USER_ID_HEADER) : null;
+        return StringUtils.isBlank(userId) ? request.getRemoteAddr() : userId;
+    }
+
     private List<ConversationChatDetail> doChat(ConversationChatDetail chat) {
         List<ConversationChatDetail> chats = new ArrayList<>();
-        Conversation conversation = conversationService.queryById(chat.getConversationId());
+        Conversation conversation = conversationService.queryRecentById(chat.getConversationId(), historyWindow);
         // TODO 增加完结状态检测
         ConversationChatDetail responseChat = chatService.chat(conversation, chat);
 
-        conversationService.addChat(chat);
-        conversationService.addChat(responseChat);
         chats.add(chat);
         chats.add(responseChat);
+        // 一问一答合并为一次批量写入
+        conversationService.addChats(chats);
         return chats;
     }
 
@@ -6,9 +6,15 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.uestc.weglas.biz.dto.ConversationQuery;
 import org.uestc.weglas.core.model.Conversation;
 import org.uestc.weglas.core.service.ConversationService;
 
+import java.util.List;
+
+import static org.uestc.weglas.core.model.BizConstants.CHAT_PAGE_SIZE;
+import static org.uestc.weglas.core.model.BizConstants.CONVERSATION_PAGE_SIZE;
+
 @Controller
 public class HomeController {
 
@@ -19,7 +25,7 @@ public class HomeController {
     @RequestMapping(value = "/")
     public String index(Model model) {
 
-        model.addAttribute("conversations", conversationService.queryAll());
+        model.addAttribute("conversations", queryRecentConversations());
         model.addAttribute("newConversation", new Conversation());
 
         return "conversations/list";
@@ -27,10 +33,19 @@ public class HomeController {
 
     @GetMapping("/conversations/detail")
     public String conversationDetail(@RequestParam Integer conversationId, Model model) {
-        Conversation conversation = conversationService.queryById(conversationId);
+        Conversation conversation = conversationService.queryRecentById(conversationId, CHAT_PAGE_SIZE);
         model.addAttribute("conversation", conversation);
-        model.addAttribute("conversations", conversationService.queryAll());
+        model.addAttribute("chatPageSize", CHAT_PAGE_SIZE);
+        model.addAttribute("conversations", queryRecentConversations());
 
         return "conversations/detail_with_stream_chat";
     }
+
+    /**
+     * 侧边栏只展示最近的一页会话
+     */
+    private List<Conversation> queryRecentConversations() {
+        ConversationQuery query = ConversationQuery.builder().pageSize(CONVERSATION_PAGE_SIZE).build();
+        return conversationService.queryPage(query).getValues();
+    }
 }
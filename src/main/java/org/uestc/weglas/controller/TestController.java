@@ -6,6 +6,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.uestc.weglas.core.client.MqttProviderClient;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 仅测试使用
  */
@@ -21,9 +23,10 @@ public class TestController {
      */
     @RequestMapping("/sendMessage")
     @ResponseBody
-    public String sendMessage(String text) {
+    public CompletableFuture<String> sendMessage(String text) {
 
-        providerClient.publish(text);
-        return "发送成功";
+        return providerClient.publishAsync(text)
+                .thenApply(v -> "发送成功")
+                .exceptionally(e -> "发送失败");
     }
 }
@@ -0,0 +1,142 @@
+package org.uestc.weglas.core.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 梯度式自适应并发限制
+ * 按时间窗口汇总延迟样本，窗口结束时以窗口平均延迟与基线比较：超过 基线*容忍倍数 时按比例收缩上限，
+ * 窗口内有请求被下游拒绝或超时时按收缩比例收缩，否则在并发接近上限时增长。每个窗口最多收缩一次。
+ * 基线是各窗口平均延迟的慢速指数平均，不会被个别很快的样本拉低，也能跟随后端整体变慢或变快。
+ * 样本只应来自实际的上游调用，缓存命中、参数错误等不经过上游的请求不计样本。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 基线的平滑系数，约等于最近20个窗口的平均
+     */
+    private static final double BASELINE_ALPHA = 0.05;
+
+    /**
+     * 单个窗口的最大收缩比例
+     */
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final double latencyTolerance;
+
+    private final long windowNanos;
+
+    private final int minWindowSamples;
+
+    private double limit;
+
+    private int inflight;
+
+    private double baseline;
+
+    private long windowStart = System.nanoTime();
+
+    private long windowLatencySum;
+
+    private int windowSamples;
+
+    private int windowDropped;
+
+    private int windowMaxInflight;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                      double latencyTolerance, long windowMillis, int minWindowSamples) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.minWindowSamples = minWindowSamples;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (inflight >= (int) limit) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        inflight++;
+        windowMaxInflight = Math.max(windowMaxInflight, inflight);
+        return true;
+    }
+
+    /**
+     * 请求结束
+     *
+     * @param latencyNanos 上游调用的延迟样本，小于0表示没有样本（如取消、缓存命中）
+     * @param dropped      是否被下游拒绝或超时
+     */
+    public synchronized void release(long latencyNanos, boolean dropped) {
+        inflight--;
+        if (dropped) {
+            windowDropped++;
+        } else if (latencyNanos >= 0) {
+            windowLatencySum += latencyNanos;
+            windowSamples++;
+        }
+
+        long now = System.nanoTime();
+        if (now - windowStart < windowNanos) {
+            return;
+        }
+        if (windowDropped > 0) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (windowSamples >= minWindowSamples) {
+            adjust((double) windowLatencySum / windowSamples);
+        } else {
+            // 样本不足时继续累积，低流量下不做判断
+            return;
+        }
+        windowStart = now;
+        windowLatencySum = 0;
+        windowSamples = 0;
+        windowDropped = 0;
+        windowMaxInflight = inflight;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInflight() {
+        return inflight;
+    }
+
+    /**
+     * 延迟基线，单位纳秒，还没有完整窗口时为0
+     */
+    public synchronized long getBaseline() {
+        return (long) baseline;
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private void adjust(double windowLatency) {
+        baseline = baseline == 0 ? windowLatency : baseline + BASELINE_ALPHA * (windowLatency - baseline);
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, latencyTolerance * baseline / windowLatency));
+        if (gradient < 1.0) {
+            limit = Math.max(minLimit, limit * gradient);
+        } else if (windowMaxInflight * 2 >= limit) {
+            // 只有并发用到一半以上才增长，避免空闲时上限无意义地涨到最大；每满一轮并发加一
+            limit = Math.min(maxLimit, limit + windowSamples / limit);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package org.uestc.weglas.core.admission;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.exception.RateLimitedException;
+import org.uestc.weglas.util.log.LogUtil;
+import reactor.core.publisher.SignalType;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 聊天接口准入控制
+ * 先按用户、会话的令牌桶限流（redis共享，多节点合计），再经过本节点的自适应并发限制；
+ * 同步聊天以实际调用模型的耗时（缓存命中不计）、流式聊天以首个chunk时间作为并发限制的延迟样本。
+ * 用户标识默认取客户端地址；请求头X-User-Id由客户端提供，更换取值即可绕过按用户限流，
+ * 只有网关会覆盖该请求头时才应开启 trust-user-header。
+ * 拒绝时抛出 {@link RateLimitedException}，由接口层转换为429。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class ChatAdmission {
+
+    private static final Logger logger = LogManager.getLogger(ChatAdmission.class);
+
+    private static final String USER_BUCKET_PREFIX = "user:";
+
+    private static final String CONVERSATION_BUCKET_PREFIX = "conversation:";
+
+    @Value("${spring.ai.admission.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 每个用户每秒允许的请求数和突发请求数
+     */
+    @Value("${spring.ai.admission.user-rate:2}")
+    private double userRate;
+
+    @Value("${spring.ai.admission.user-burst:10}")
+    private int userBurst;
+
+    /**
+     * 每个会话每秒允许的请求数和突发请求数
+     */
+    @Value("${spring.ai.admission.conversation-rate:1}")
+    private double conversationRate;
+
+    @Value("${spring.ai.admission.conversation-burst:3}")
+    private int conversationBurst;
+
+    /**
+     * 并发限制的初始值、下限和上限
+     */
+    @Value("${spring.ai.admission.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${spring.ai.admission.min-limit:4}")
+    private int minLimit;
+
+    @Value("${spring.ai.admission.max-limit:200}")
+    private int maxLimit;
+
+    /**
+     * 过载时并发上限的收缩比例
+     */
+    @Value("${spring.ai.admission.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    /**
+     * 窗口平均延迟超过基线的多少倍视为过载
+     */
+    @Value("${spring.ai.admission.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    /**
+     * 并发限制的调整窗口，单位毫秒，每个窗口最多收缩一次
+     */
+    @Value("${spring.ai.admission.window:1000}")
+    private long window;
+
+    /**
+     * 窗口内至少有多少个延迟样本才按延迟调整
+     */
+    @Value("${spring.ai.admission.window-min-samples:10}")
+    private int windowMinSamples;
+
+    /**
+     * 并发限制拒绝时建议的重试等待时间，单位毫秒
+     */
+    @Value("${spring.ai.admission.retry-after:1000}")
+    private long retryAfter;
+
+    @Autowired
+    private RedisTokenBucket tokenBucket;
+
+    private AdaptiveConcurrencyLimiter syncLimiter;
+
+    private AdaptiveConcurrencyLimiter streamLimiter;
+
+    /**
+     * 当前线程上的同步聊天许可，用于记录实际调用模型的耗时
+     */
+    private static final ThreadLocal<Permit> SYNC_PERMIT = new ThreadLocal<>();
+
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        syncLimiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio, latencyTolerance,
+                window, windowMinSamples);
+        streamLimiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio,
+                latencyTolerance, window, windowMinSamples);
+    }
+
+    /**
+     * 准入检查，通过后返回的许可必须释放
+     *
+     * @param userId         用户标识
+     * @param conversationId 会话id，新建会话时为空
+     * @param stream         是否流式聊天
+     */
+    public Permit admit(String userId, Integer conversationId, boolean stream) {
+        if (!enabled) {
+            return new Permit(null);
+        }
+        if (StringUtils.isNotBlank(userId)) {
+            checkRate(USER_BUCKET_PREFIX + userId, userRate, userBurst);
+        }
+        if (conversationId != null) {
+            checkRate(CONVERSATION_BUCKET_PREFIX + conversationId, conversationRate, conversationBurst);
+        }
+        AdaptiveConcurrencyLimiter limiter = stream ? streamLimiter : syncLimiter;
+        if (!limiter.tryAcquire()) {
+            LogUtil.warn(logger, "chat rejected by concurrency limit,userId=", userId, ",stream=", stream,
+                    ",limit=", limiter.getLimit());
+            throw new RateLimitedException(retryAfter);
+        }
+        Permit permit = new Permit(limiter);
+        if (!stream) {
+            // 同步聊天在请求线程上调用模型，释放时清除
+            SYNC_PERMIT.set(permit);
+        }
+        return permit;
+    }
+
+    /**
+     * 同步聊天实际调用了模型，在请求线程上调用，记录为当前许可的延迟样本
+     */
+    public static void recordUpstreamLatency(long nanos) {
+        Permit permit = SYNC_PERMIT.get();
+        if (permit != null) {
+            permit.upstreamNanos = nanos;
+        }
+    }
+
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    public AdaptiveConcurrencyLimiter getSyncLimiter() {
+        return syncLimiter;
+    }
+
+    public AdaptiveConcurrencyLimiter getStreamLimiter() {
+        return streamLimiter;
+    }
+
+    private void checkRate(String bucket, double rate, int burst) {
+        long wait = tokenBucket.tryAcquire(bucket, rate, burst);
+        if (wait > 0) {
+            rateLimited.incrementAndGet();
+            LogUtil.warn(logger, "chat rejected by rate limit,bucket=", bucket, ",retryAfter=", wait);
+            throw new RateLimitedException(wait);
+        }
+    }
+
+    /**
+     * 后端过载类的错误，用于收缩并发上限；参数错误等不影响
+     */
+    static boolean isOverload(Throwable e) {
+        return e instanceof ManagerBizException && isOverload(((ManagerBizException) e).getErrorCode());
+    }
+
+    static boolean isOverload(String resultCode) {
+        return ResultEnum.SYSTEM_BUSY.getCode().equals(resultCode)
+                || ResultEnum.INVOKE_TIMEOUT.getCode().equals(resultCode);
+    }
+
+    /**
+     * 并发许可，记录延迟样本
+     */
+    public static class Permit {
+
+        private final AdaptiveConcurrencyLimiter limiter;
+
+        private final long start = System.nanoTime();
+
+        private volatile long firstResponseNanos = -1;
+
+        private volatile long upstreamNanos = -1;
+
+        private volatile boolean overloaded;
+
+        private boolean released;
+
+        Permit(AdaptiveConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        /**
+         * 收到首个响应，流式聊天以此作为延迟样本
+         */
+        public void onFirstResponse() {
+            if (firstResponseNanos < 0) {
+                firstResponseNanos = System.nanoTime() - start;
+            }
+        }
+
+        public void onError(Throwable e) {
+            overloaded = isOverload(e);
+        }
+
+        /**
+         * 同步聊天结束，以结果码判断是否过载；没有调用模型（如缓存命中、参数错误）时不计样本
+         */
+        public void release(String resultCode) {
+            if (SYNC_PERMIT.get() == this) {
+                SYNC_PERMIT.remove();
+            }
+            overloaded = isOverload(resultCode);
+            doRelease(upstreamNanos);
+        }
+
+        /**
+         * 流式聊天结束：没有收到响应时不计样本，避免db查询失败等快速出错拉低延迟
+         */
+        public void release(SignalType signal) {
+            doRelease(firstResponseNanos);
+        }
+
+        private synchronized void doRelease(long latencyNanos) {
+            if (limiter == null || released) {
+                return;
+            }
+            released = true;
+            limiter.release(overloaded ? -1 : latencyNanos, overloaded);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.uestc.weglas.core.admission;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.log.LogUtil;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于redis的令牌桶，多节点共享同一个桶
+ * 取令牌和补充令牌在一个lua脚本中完成，保证原子性；桶在长时间不用后自动过期。
+ * redis访问失败时降级为本机令牌桶（各节点独立计数），一段时间后再重试。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class RedisTokenBucket {
+
+    private static final Logger logger = LogManager.getLogger(RedisTokenBucket.class);
+
+    private static final String KEY_PREFIX = "ai_manager:rate:";
+
+    /**
+     * KEYS[1] 桶; ARGV 每秒补充令牌数, 容量, 当前毫秒时间戳
+     * 返回0表示获取成功，否则为需要等待的毫秒数
+     */
+    private static final String SCRIPT =
+            "local rate = tonumber(ARGV[1])\n"
+                    + "local capacity = tonumber(ARGV[2])\n"
+                    + "local now = tonumber(ARGV[3])\n"
+                    + "local values = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n"
+                    + "local tokens = tonumber(values[1])\n"
+                    + "local ts = tonumber(values[2])\n"
+                    + "if tokens == nil or ts == nil then\n"
+                    + "  tokens = capacity\n"
+                    + "  ts = now\n"
+                    + "end\n"
+                    + "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)\n"
+                    + "local wait = 0\n"
+                    + "if tokens >= 1 then\n"
+                    + "  tokens = tokens - 1\n"
+                    + "else\n"
+                    + "  wait = math.ceil((1 - tokens) * 1000 / rate)\n"
+                    + "end\n"
+                    + "redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))\n"
+                    + "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)\n"
+                    + "return wait\n";
+
+    private static final DefaultRedisScript<Long> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(SCRIPT, Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * redis访问失败后暂停使用的时间，单位毫秒
+     */
+    @Value("${spring.ai.admission.redis-retry-interval:30000}")
+    private long redisRetryInterval;
+
+    private volatile long redisDisabledUntil;
+
+    /**
+     * redis不可用时的本机令牌桶
+     */
+    private final Cache<String, LocalBucket> localBuckets = CacheBuilder.newBuilder()
+            .maximumSize(100000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    private final AtomicLong redisErrors = new AtomicLong();
+
+    /**
+     * 从桶中取一个令牌
+     *
+     * @param key      桶，如 user:xxx
+     * @param rate     每秒补充的令牌数
+     * @param capacity 桶容量，即允许的突发请求数
+     * @return 0表示获取成功，否则为建议的等待毫秒数
+     */
+    public long tryAcquire(String key, double rate, int capacity) {
+        long now = System.currentTimeMillis();
+        if (now >= redisDisabledUntil) {
+            try {
+                Long wait = stringRedisTemplate.execute(TOKEN_BUCKET_SCRIPT, Collections.singletonList(KEY_PREFIX + key),
+                        String.valueOf(rate), String.valueOf(capacity), String.valueOf(now));
+                return wait == null ? 0 : wait;
+            } catch (RuntimeException e) {
+                onRedisFailure(e);
+            }
+        }
+        return localBucketOf(key, rate, capacity).tryAcquire(now);
+    }
+
+    public long getRedisErrors() {
+        return redisErrors.get();
+    }
+
+    private LocalBucket localBucketOf(String key, double rate, int capacity) {
+        try {
+            return localBuckets.get(key, () -> new LocalBucket(rate, capacity));
+        } catch (ExecutionException e) {
+            throw new ManagerBizException(e.getCause());
+        }
+    }
+
+    private void onRedisFailure(RuntimeException e) {
+        redisErrors.incrementAndGet();
+        redisDisabledUntil = System.currentTimeMillis() + redisRetryInterval;
+        LogUtil.warn(logger, e, "redis rate limit unavailable,fallback to local bucket for " + redisRetryInterval + "ms");
+    }
+
+    /**
+     * 与lua脚本逻辑相同的本机令牌桶
+     */
+    private static class LocalBucket {
+
+        private final double rate;
+
+        private final int capacity;
+
+        private double tokens;
+
+        private long ts;
+
+        LocalBucket(double rate, int capacity) {
+            this.rate = rate;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.ts = System.currentTimeMillis();
+        }
+
+        synchronized long tryAcquire(long now) {
+            tokens = Math.min(capacity, tokens + Math.max(0, now - ts) * rate / 1000);
+            ts = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) * 1000 / rate);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package org.uestc.weglas.core.bridge;
+
+import com.alibaba.fastjson2.JSONException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.biz.dto.DeviceChatReply;
+import org.uestc.weglas.biz.dto.DeviceChatRequest;
+import org.uestc.weglas.core.callback.MqttMessageHandler;
+import org.uestc.weglas.core.client.MqttInboundMessage;
+import org.uestc.weglas.core.client.MqttProviderClient;
+import org.uestc.weglas.core.codec.MqttPayloadCodec;
+import org.uestc.weglas.core.codec.MqttPayloadCodecs;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.core.model.Conversation;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+import org.uestc.weglas.core.scheduling.InvocationPriority;
+import org.uestc.weglas.core.service.ChatService;
+import org.uestc.weglas.core.service.ConversationService;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.log.LogUtil;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.uestc.weglas.core.model.BizConstants.CHAT_EXT_CORRELATION_ID;
+import static org.uestc.weglas.core.model.BizConstants.CHAT_EXT_DEVICE_ID;
+
+/**
+ * mqtt设备聊天桥接
+ * 设备向请求主题发送 {@link DeviceChatRequest}，每个设备绑定一个会话，
+ * 流式响应按时间/条数合并后以 {@link DeviceChatReply} 发布到该设备的应答主题，编码与请求主题一致。
+ * 每个设备同时进行的请求数受限，超出时直接应答SYSTEM_BUSY。
+ * 合并按定时器触发，不受发送背压约束：等待broker确认期间合并好的批次暂存在有界队列中，
+ * 发送过慢或离线缓冲导致积压超过上限时以SYSTEM_BUSY结束本次请求。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class MqttChatBridge implements MqttMessageHandler {
+
+    private static final Logger logger = LogManager.getLogger(MqttChatBridge.class);
+
+    private static final String DEVICE_ID_PLACEHOLDER = "{deviceId}";
+
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+
+    @Value("${spring.mqtt.bridge.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 请求主题过滤器，设备id所在层级为 +
+     */
+    @Value("${spring.mqtt.bridge.request-topic:device/+/prompt}")
+    private String requestTopic;
+
+    /**
+     * 应答主题模板
+     */
+    @Value("${spring.mqtt.bridge.reply-topic:device/{deviceId}/reply}")
+    private String replyTopic;
+
+    /**
+     * 新建设备会话使用的模型
+     */
+    @Value("${spring.mqtt.bridge.llm-model:default}")
+    private String llmModel;
+
+    /**
+     * 每个设备的最大并发请求数
+     */
+    @Value("${spring.mqtt.bridge.max-concurrency-per-device:1}")
+    private int maxConcurrencyPerDevice;
+
+    /**
+     * 单次请求的最长处理时间，单位毫秒
+     */
+    @Value("${spring.mqtt.bridge.timeout:120000}")
+    private long timeout;
+
+    /**
+     * 分片合并的最长等待时间，单位毫秒
+     */
+    @Value("${spring.mqtt.bridge.flush-interval:100}")
+    private long flushInterval;
+
+    /**
+     * 分片合并的最大chunk数
+     */
+    @Value("${spring.mqtt.bridge.flush-chunks:16}")
+    private int flushChunks;
+
+    /**
+     * 等待发送的合并批次上限
+     */
+    @Value("${spring.mqtt.bridge.max-pending-batches:256}")
+    private int maxPendingBatches;
+
+    @Value("${spring.ai.history-window:20}")
+    private int historyWindow;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private MqttProviderClient providerClient;
+
+    @Autowired
+    private MqttPayloadCodecs payloadCodecs;
+
+    @Autowired
+    @Qualifier("dbScheduler")
+    private Scheduler dbScheduler;
+
+    /**
+     * 设备并发许可，过期时间远大于单次请求超时，不会回收正在使用的许可
+     */
+    private final Cache<String, Semaphore> devicePermits = CacheBuilder.newBuilder()
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .build();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong active = new AtomicLong();
+
+    @Override
+    public String topicFilter() {
+        return enabled ? requestTopic : null;
+    }
+
+    @Override
+    public boolean supports(String topic) {
+        return enabled && MqttTopic.isMatched(requestTopic, topic);
+    }
+
+    @Override
+    public void handle(MqttInboundMessage message) {
+        requests.incrementAndGet();
+        String deviceId = resolveDeviceId(message.getTopic());
+        String reply = replyTopic.replace(DEVICE_ID_PLACEHOLDER, deviceId);
+
+        // 应答使用与请求相同的编码
+        MqttPayloadCodec codec = payloadCodecs.codecFor(message.getTopic());
+
+        DeviceChatRequest request = parseRequest(message);
+        if (request == null || StringUtils.isBlank(request.getContent())) {
+            rejected.incrementAndGet();
+            sendError(reply, codec, request == null ? null : request.getCorrelationId(), 0,
+                    ResultEnum.PARAMETER_ILLEGAL);
+            return;
+        }
+        if (StringUtils.isBlank(request.getCorrelationId())) {
+            request.setCorrelationId(UUID.randomUUID().toString());
+        }
+        String correlationId = request.getCorrelationId();
+
+        Semaphore permits = permitsOf(deviceId);
+        if (!permits.tryAcquire()) {
+            rejected.incrementAndGet();
+            LogUtil.warn(logger, "device chat rejected, too many requests,deviceId=", deviceId,
+                    ",correlationId=", correlationId);
+            sendError(reply, codec, correlationId, 0, ResultEnum.SYSTEM_BUSY);
+            return;
+        }
+        active.incrementAndGet();
+
+        AtomicLong seq = new AtomicLong();
+        Mono.fromCallable(() -> prepare(deviceId, request))
+                // db操作切换到db调度器，不占用入站分片线程
+                .subscribeOn(dbScheduler)
+                // 设备请求排在页面交互请求之后
+                .flatMapMany(tuple -> chatService.streamChat(tuple.getT1(), tuple.getT2(),
+                        InvocationPriority.BACKGROUND))
+                // 合并细碎chunk，减少mqtt消息数
+                .bufferTimeout(flushChunks, Duration.ofMillis(flushInterval))
+                .map(chunks -> String.join("", chunks))
+                // bufferTimeout的定时器不看下游请求数，没有请求时会报错，发送慢时先放入有界队列
+                .onBackpressureBuffer(maxPendingBatches)
+                .onErrorMap(Exceptions::isOverflow, e -> new ManagerBizException(ResultEnum.SYSTEM_BUSY))
+                // 逐条等待broker确认，保证分片顺序
+                .concatMap(text -> publish(reply, codec, DeviceChatReply.builder()
+                        .correlationId(correlationId)
+                        .seq(seq.getAndIncrement())
+                        .type(DeviceChatReply.TYPE_CHUNK)
+                        .content(text)
+                        .build()), 1)
+                .then(Mono.defer(() -> publish(reply, codec, DeviceChatReply.builder()
+                        .correlationId(correlationId)
+                        .seq(seq.getAndIncrement())
+                        .type(DeviceChatReply.TYPE_DONE)
+                        .build())))
+                // 超时取消订阅，上游模型请求随之取消，已生成部分标记为中止后保存
+                .timeout(Duration.ofMillis(timeout))
+                .doOnSuccess(v -> completed.incrementAndGet())
+                .doOnError(e -> {
+                    failed.incrementAndGet();
+                    LogUtil.error(logger, e, "device chat failed,deviceId=" + deviceId
+                            + ",correlationId=" + correlationId);
+                    sendError(reply, codec, correlationId, seq.getAndIncrement(), errorOf(e));
+                })
+                .doFinally(signal -> {
+                    active.decrementAndGet();
+                    permits.release();
+                })
+                .subscribe(v -> {
+                }, e -> {
+                });
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getActive() {
+        return active.get();
+    }
+
+    private Tuple2<Conversation, ConversationChatDetail> prepare(String deviceId, DeviceChatRequest request) {
+        Conversation deviceConversation = conversationService.queryOrCreateByDevice(deviceId, llmModel);
+        Conversation conversation = conversationService.queryRecentById(deviceConversation.getId(), historyWindow);
+
+        ConversationChatDetail chat = new ConversationChatDetail();
+        chat.setConversationId(conversation.getId());
+        chat.setRole("user");
+        chat.setType("TEXT");
+        chat.setContent(request.getContent());
+        chat.getExt().put(CHAT_EXT_DEVICE_ID, deviceId);
+        chat.getExt().put(CHAT_EXT_CORRELATION_ID, request.getCorrelationId());
+
+        // 写入当前聊天内容到db
+        conversationService.addChat(chat);
+        return Tuples.of(conversation, chat);
+    }
+
+    private DeviceChatRequest parseRequest(MqttInboundMessage message) {
+        try {
+            return message.decodePayload(payloadCodecs, DeviceChatRequest.class);
+        } catch (JSONException | ManagerBizException e) {
+            LogUtil.warn(logger, "device chat request illegal,topic=", message.getTopic());
+            return null;
+        }
+    }
+
+    /**
+     * 取请求主题过滤器中 + 所在层级作为设备id
+     */
+    private String resolveDeviceId(String topic) {
+        String[] filterLevels = requestTopic.split("/");
+        String[] topicLevels = topic.split("/");
+        for (int i = 0; i < filterLevels.length && i < topicLevels.length; i++) {
+            if (SINGLE_LEVEL_WILDCARD.equals(filterLevels[i])) {
+                return topicLevels[i];
+            }
+        }
+        return topic;
+    }
+
+    private Semaphore permitsOf(String deviceId) {
+        try {
+            return devicePermits.get(deviceId, () -> new Semaphore(maxConcurrencyPerDevice));
+        } catch (ExecutionException e) {
+            throw new ManagerBizException(e.getCause());
+        }
+    }
+
+    private Mono<Void> publish(String topic, MqttPayloadCodec codec, DeviceChatReply reply) {
+        return Mono.defer(() -> Mono.fromFuture(providerClient.publishValueAsync(topic, codec, reply, false)));
+    }
+
+    private void sendError(String topic, MqttPayloadCodec codec, String correlationId, long seq, ResultEnum error) {
+        DeviceChatReply reply = DeviceChatReply.builder()
+                .correlationId(correlationId)
+                .seq(seq)
+                .type(DeviceChatReply.TYPE_ERROR)
+                .content(error.getCode())
+                .build();
+        providerClient.publishValueAsync(topic, codec, reply, false)
+                .exceptionally(e -> {
+                    LogUtil.warn(logger, e, "device chat error reply failed,topic=" + topic);
+                    return null;
+                });
+    }
+
+    private ResultEnum errorOf(Throwable e) {
+        if (e instanceof ManagerBizException) {
+            for (ResultEnum resultEnum : ResultEnum.values()) {
+                if (resultEnum.getCode().equals(((ManagerBizException) e).getErrorCode())) {
+                    return resultEnum;
+                }
+            }
+        }
+        return ResultEnum.INVOKE_FAIL;
+    }
+}
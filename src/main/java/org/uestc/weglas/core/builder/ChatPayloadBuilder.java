@@ -0,0 +1,87 @@
+package org.uestc.weglas.core.builder;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.TypeReference;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+import org.uestc.weglas.util.exception.AssertUtil;
+import org.uestc.weglas.util.exception.ManagerBizException;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模型请求体的构建和同步响应的解析
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class ChatPayloadBuilder {
+
+    private static final Type RESPONSE_TYPE = new TypeReference<Map<String, String>>() {
+    }.getType();
+
+    public static Map<String, Object> buildPayload(ConversationChatDetail currentChat,
+                                                   List<ConversationChatDetail> history) {
+        Map<String, Object> requestPayload = new HashMap<>(4);
+        requestPayload.put("message", currentChat.getContent());
+        requestPayload.put("historyMessages", history);
+        return requestPayload;
+    }
+
+    /**
+     * 取响应中url编码的response字段
+     */
+    public static String parseResponse(String json) {
+        Map<String, String> map = JSON.parseObject(json, RESPONSE_TYPE);
+        AssertUtil.notNull(map);
+        String response = urlDecode(map.getOrDefault("response", ""));
+        AssertUtil.notBlank(response);
+        return response;
+    }
+
+    /**
+     * url解码。没有 % 和 + 时结果与原文相同，直接返回；
+     * 全是ascii时把转义还原为字节后一次按utf-8解码，比URLDecoder逐段解码快；含非ascii字符时交给URLDecoder。
+     */
+    static String urlDecode(String value) {
+        if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+            return value;
+        }
+        int length = value.length();
+        byte[] bytes = new byte[length];
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '+') {
+                bytes[n++] = ' ';
+            } else if (c == '%') {
+                int hi = i + 2 < length ? Character.digit(value.charAt(i + 1), 16) : -1;
+                int lo = hi < 0 ? -1 : Character.digit(value.charAt(i + 2), 16);
+                if (lo < 0) {
+                    throw new IllegalArgumentException("illegal escape at " + i);
+                }
+                bytes[n++] = (byte) (hi << 4 | lo);
+                i += 2;
+            } else if (c < 0x80) {
+                bytes[n++] = (byte) c;
+            } else {
+                return urlDecodeSlow(value);
+            }
+        }
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private static String urlDecodeSlow(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new ManagerBizException(ResultEnum.INVOKE_FAIL);
+        }
+    }
+}
@@ -19,6 +19,15 @@ public class ConversationChatBuilder {
         return chat;
     }
 
+    public static ConversationChatDetail buildSystemChat(Conversation conversation, String content) {
+        ConversationChatDetail chat = new ConversationChatDetail();
+        chat.setConversationId(conversation.getId());
+        chat.setType("TEXT");
+        chat.setContent(content);
+        chat.setRole("system");
+
+        return chat;
+    }
 
     public static ConversationChatDetail buildDefaultChat(Conversation conversation) {
         ConversationChatDetail chat = new ConversationChatDetail();
@@ -0,0 +1,167 @@
+package org.uestc.weglas.core.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+import org.uestc.weglas.util.exception.ManagerBizException;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 同步聊天的响应缓存
+ * key为 (llmModel, 归一化后的输入, 历史聊天的哈希)，相同的输入和上下文直接返回缓存的回答。
+ * 同一key的并发请求只有一个调用模型，其余等待该调用的结果；调用失败不缓存。
+ * 按回答的字符数限制总大小，写入后按ttl过期。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class ChatResponseCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    @Value("${spring.ai.response-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓存回答的总字符数上限
+     */
+    @Value("${spring.ai.response-cache.max-weight:10000000}")
+    private long maxWeight;
+
+    /**
+     * 写入后的过期时间，单位毫秒
+     */
+    @Value("${spring.ai.response-cache.ttl:600000}")
+    private long ttl;
+
+    /**
+     * 归一化时是否忽略大小写
+     */
+    @Value("${spring.ai.response-cache.ignore-case:false}")
+    private boolean ignoreCase;
+
+    private Cache<String, String> responses;
+
+    @PostConstruct
+    public void init() {
+        responses = CacheBuilder.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String key, String value) -> key.length() + value.length())
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 命中时返回缓存的回答，否则调用loader并缓存结果；同一key的并发调用合并为一次
+     *
+     * @param llmModel 模型
+     * @param prompt   当前输入
+     * @param history  发给模型的历史聊天
+     * @param loader   调用模型
+     */
+    public String get(String llmModel, String prompt, List<ConversationChatDetail> history, Callable<String> loader) {
+        if (!enabled) {
+            return call(loader);
+        }
+        try {
+            return responses.get(keyOf(llmModel, prompt, history), loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ManagerBizException(cause);
+        }
+    }
+
+    public void invalidateAll() {
+        responses.invalidateAll();
+    }
+
+    public long getSize() {
+        return responses.size();
+    }
+
+    /**
+     * 命中次数，包含等待同一key进行中调用的请求
+     */
+    public long getHits() {
+        CacheStats stats = responses.stats();
+        return stats.requestCount() - stats.loadCount();
+    }
+
+    /**
+     * 实际调用模型的次数
+     */
+    public long getLoads() {
+        return responses.stats().loadCount();
+    }
+
+    /**
+     * 等待同一key进行中调用而没有重复调用模型的次数
+     */
+    public long getCoalesced() {
+        CacheStats stats = responses.stats();
+        return stats.missCount() - stats.loadCount();
+    }
+
+    public double getHitRate() {
+        CacheStats stats = responses.stats();
+        return stats.requestCount() == 0 ? 0 : (double) getHits() / stats.requestCount();
+    }
+
+    public long getEvictions() {
+        return responses.stats().evictionCount();
+    }
+
+    String keyOf(String llmModel, String prompt, List<ConversationChatDetail> history) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putString(normalize(prompt), StandardCharsets.UTF_8);
+        // 只取角色和内容，id和时间不同但内容相同的历史视为相同
+        for (ConversationChatDetail chat : history) {
+            hasher.putChar(FIELD_SEPARATOR);
+            hasher.putString(String.valueOf(chat.getRole()), StandardCharsets.UTF_8);
+            hasher.putChar(FIELD_SEPARATOR);
+            hasher.putString(String.valueOf(chat.getContent()), StandardCharsets.UTF_8);
+        }
+        return llmModel + ":" + hasher.hash();
+    }
+
+    private String normalize(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(prompt, Normalizer.Form.NFKC);
+        normalized = WHITESPACE.matcher(normalized.trim()).replaceAll(" ");
+        return ignoreCase ? normalized.toLowerCase(Locale.ROOT) : normalized;
+    }
+
+    private static String call(Callable<String> loader) {
+        try {
+            return loader.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ManagerBizException(e);
+        }
+    }
+}
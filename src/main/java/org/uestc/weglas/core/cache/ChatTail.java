@@ -0,0 +1,42 @@
+package org.uestc.weglas.core.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.uestc.weglas.base.ToString;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 缓存的会话最近聊天窗口
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatTail extends ToString {
+
+    /**
+     * 最近的聊天，按时间正序
+     */
+    private List<ConversationChatDetail> chats = new ArrayList<>();
+
+    /**
+     * 窗口之前是否还有更早的聊天
+     */
+    private boolean hasMore;
+
+    /**
+     * 加载时redis中的窗口版本，与当前版本不一致说明加载后有过写入，不可使用
+     */
+    private long version;
+
+    public ChatTail(List<ConversationChatDetail> chats, boolean hasMore) {
+        this.chats = chats;
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,367 @@
+package org.uestc.weglas.core.cache;
+
+import com.alibaba.fastjson2.JSONB;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.core.converter.ExtConverter;
+import org.uestc.weglas.core.model.Conversation;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+import org.uestc.weglas.util.log.LogUtil;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 会话两级缓存：本地缓存 + redis
+ * 缓存会话基本信息（不含chatList）和最近聊天窗口，value使用fastjson2 JSONB二进制序列化。
+ * 本地缓存只在本机失效，多节点间依赖较短的本地过期时间收敛。
+ * redis访问失败时降级为只用本地缓存，一段时间后再重试。
+ * 聊天窗口带版本：失效时版本加一，加载期间版本变化的窗口不写入缓存，避免写入前加载的旧窗口在失效后被放回。
+ * 缓存中保存副本，读写都复制聊天，调用方之间不共享可变对象。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class ConversationCache {
+
+    private static final Logger logger = LogManager.getLogger(ConversationCache.class);
+
+    private static final String HEADER_KEY_PREFIX = "ai_manager:conversation:";
+
+    private static final String TAIL_KEY_PREFIX = "ai_manager:conversation_tail:";
+
+    private static final String TAIL_VERSION_KEY_PREFIX = "ai_manager:conversation_tail_version:";
+
+    /**
+     * 本地窗口版本的分段数，按会话id取模，同段会话失效时互相影响只会少缓存一次
+     */
+    private static final int LOCAL_VERSION_STRIPES = 1024;
+
+    /**
+     * redis不可用时的版本，此时加载的窗口不写入redis
+     */
+    private static final long NO_REMOTE_VERSION = -1;
+
+    @Autowired
+    private RedisTemplate<String, byte[]> binaryRedisTemplate;
+
+    @Value("${spring.ai.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${spring.ai.cache.local-max-size:10000}")
+    private long localMaxSize;
+
+    /**
+     * 本地缓存过期时间，单位毫秒
+     */
+    @Value("${spring.ai.cache.local-ttl:5000}")
+    private long localTtl;
+
+    @Value("${spring.ai.cache.redis-enabled:true}")
+    private boolean redisEnabled;
+
+    /**
+     * redis缓存过期时间，单位毫秒
+     */
+    @Value("${spring.ai.cache.redis-ttl:600000}")
+    private long redisTtl;
+
+    /**
+     * redis访问失败后暂停使用的时间，单位毫秒
+     */
+    @Value("${spring.ai.cache.redis-retry-interval:30000}")
+    private long redisRetryInterval;
+
+    private Cache<Integer, Conversation> localHeaders;
+
+    private Cache<Integer, ChatTail> localTails;
+
+    private final AtomicLongArray localTailVersions = new AtomicLongArray(LOCAL_VERSION_STRIPES);
+
+    private volatile long redisDisabledUntil;
+
+    private final AtomicLong localHits = new AtomicLong();
+
+    private final AtomicLong redisHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong redisErrors = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        localHeaders = CacheBuilder.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl, TimeUnit.MILLISECONDS)
+                .build();
+        localTails = CacheBuilder.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * @return 会话基本信息的副本，未命中返回 {@code null}
+     */
+    public Conversation getHeader(Integer conversationId) {
+        Conversation conversation = get(localHeaders, HEADER_KEY_PREFIX, conversationId, Conversation.class);
+        return conversation == null ? null : copyOf(conversation);
+    }
+
+    public void putHeader(Conversation conversation) {
+        put(localHeaders, HEADER_KEY_PREFIX, conversation.getId(), copyOf(conversation));
+    }
+
+    /**
+     * @return 最近聊天窗口的副本，未命中或redis中的窗口已过期返回 {@code null}
+     */
+    public ChatTail getTail(Integer conversationId) {
+        if (!enabled) {
+            return null;
+        }
+        ChatTail tail = localTails.getIfPresent(conversationId);
+        if (tail != null) {
+            localHits.incrementAndGet();
+            return copyOf(tail);
+        }
+
+        List<byte[]> values = redisMultiGet(TAIL_KEY_PREFIX + conversationId,
+                TAIL_VERSION_KEY_PREFIX + conversationId);
+        if (values != null && values.get(0) != null) {
+            tail = JSONB.parseObject(values.get(0), ChatTail.class);
+            if (tail.getVersion() == parseVersion(values.get(1))) {
+                localTails.put(conversationId, tail);
+                redisHits.incrementAndGet();
+                return copyOf(tail);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 加载窗口前取版本，写入时版本已变化则放弃写入
+     */
+    public TailVersion tailVersion(Integer conversationId) {
+        long local = localTailVersions.get(stripe(conversationId));
+        if (!enabled) {
+            return new TailVersion(local, NO_REMOTE_VERSION);
+        }
+        List<byte[]> values = redisMultiGet(TAIL_VERSION_KEY_PREFIX + conversationId);
+        return new TailVersion(local, values == null ? NO_REMOTE_VERSION : parseVersion(values.get(0)));
+    }
+
+    public void putTail(Integer conversationId, ChatTail tail, TailVersion version) {
+        if (!enabled || localTailVersions.get(stripe(conversationId)) != version.local) {
+            return;
+        }
+        ChatTail copy = copyOf(tail);
+        copy.setVersion(version.remote);
+        localTails.put(conversationId, copy);
+        if (version.remote != NO_REMOTE_VERSION) {
+            redisSet(TAIL_KEY_PREFIX + conversationId, JSONB.toBytes(copy));
+        }
+    }
+
+    /**
+     * 失效会话基本信息和最近聊天窗口
+     */
+    public void invalidate(Integer conversationId) {
+        if (!enabled) {
+            return;
+        }
+        localTailVersions.incrementAndGet(stripe(conversationId));
+        localHeaders.invalidate(conversationId);
+        localTails.invalidate(conversationId);
+        redisIncrement(TAIL_VERSION_KEY_PREFIX + conversationId);
+        redisDelete(HEADER_KEY_PREFIX + conversationId, TAIL_KEY_PREFIX + conversationId);
+    }
+
+    public long getLocalHits() {
+        return localHits.get();
+    }
+
+    public long getRedisHits() {
+        return redisHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getRedisErrors() {
+        return redisErrors.get();
+    }
+
+    private <V> V get(Cache<Integer, V> localCache, String keyPrefix, Integer conversationId, Class<V> type) {
+        if (!enabled) {
+            return null;
+        }
+        V value = localCache.getIfPresent(conversationId);
+        if (value != null) {
+            localHits.incrementAndGet();
+            return value;
+        }
+
+        byte[] bytes = redisGet(keyPrefix + conversationId);
+        if (bytes != null) {
+            value = JSONB.parseObject(bytes, type);
+            localCache.put(conversationId, value);
+            redisHits.incrementAndGet();
+            return value;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private <V> void put(Cache<Integer, V> localCache, String keyPrefix, Integer conversationId, V value) {
+        if (!enabled) {
+            return;
+        }
+        localCache.put(conversationId, value);
+        redisSet(keyPrefix + conversationId, JSONB.toBytes(value));
+    }
+
+    private byte[] redisGet(String key) {
+        if (!redisAvailable()) {
+            return null;
+        }
+        try {
+            return binaryRedisTemplate.opsForValue().get(key);
+        } catch (RuntimeException e) {
+            onRedisFailure(e);
+            return null;
+        }
+    }
+
+    private List<byte[]> redisMultiGet(String... keys) {
+        if (!redisAvailable()) {
+            return null;
+        }
+        try {
+            return binaryRedisTemplate.opsForValue().multiGet(Arrays.asList(keys));
+        } catch (RuntimeException e) {
+            onRedisFailure(e);
+            return null;
+        }
+    }
+
+    /**
+     * 版本key的过期时间是窗口的两倍，窗口过期前版本不会重置
+     */
+    private void redisIncrement(String key) {
+        if (!redisAvailable()) {
+            return;
+        }
+        try {
+            binaryRedisTemplate.opsForValue().increment(key);
+            binaryRedisTemplate.expire(key, redisTtl * 2, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            onRedisFailure(e);
+        }
+    }
+
+    private void redisSet(String key, byte[] value) {
+        if (!redisAvailable()) {
+            return;
+        }
+        try {
+            binaryRedisTemplate.opsForValue().set(key, value, redisTtl, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            onRedisFailure(e);
+        }
+    }
+
+    private void redisDelete(String... keys) {
+        if (!redisAvailable()) {
+            return;
+        }
+        try {
+            binaryRedisTemplate.delete(Arrays.asList(keys));
+        } catch (RuntimeException e) {
+            onRedisFailure(e);
+        }
+    }
+
+    private boolean redisAvailable() {
+        return redisEnabled && System.currentTimeMillis() >= redisDisabledUntil;
+    }
+
+    private void onRedisFailure(RuntimeException e) {
+        redisErrors.incrementAndGet();
+        redisDisabledUntil = System.currentTimeMillis() + redisRetryInterval;
+        LogUtil.warn(logger, e, "redis cache unavailable,fallback to local cache for " + redisRetryInterval + "ms");
+    }
+
+    private static int stripe(Integer conversationId) {
+        return (conversationId & Integer.MAX_VALUE) % LOCAL_VERSION_STRIPES;
+    }
+
+    private static long parseVersion(byte[] bytes) {
+        return bytes == null ? 0 : Long.parseLong(new String(bytes, StandardCharsets.US_ASCII));
+    }
+
+    private static ChatTail copyOf(ChatTail tail) {
+        List<ConversationChatDetail> chats = new ArrayList<>(tail.getChats().size());
+        for (ConversationChatDetail chat : tail.getChats()) {
+            chats.add(copyOf(chat));
+        }
+        ChatTail copy = new ChatTail(chats, tail.isHasMore());
+        copy.setVersion(tail.getVersion());
+        return copy;
+    }
+
+    private static ConversationChatDetail copyOf(ConversationChatDetail chat) {
+        ConversationChatDetail copy = new ConversationChatDetail();
+        copy.setId(chat.getId());
+        copy.setConversationId(chat.getConversationId());
+        copy.setRole(chat.getRole());
+        copy.setType(chat.getType());
+        copy.setContent(chat.getContent());
+        copy.setExt(ExtConverter.copy(chat.getExt()));
+        copy.setGmtCreate(chat.getGmtCreate());
+        copy.setGmtModified(chat.getGmtModified());
+        return copy;
+    }
+
+    private static Conversation copyOf(Conversation conversation) {
+        Conversation copy = new Conversation();
+        copy.setId(conversation.getId());
+        copy.setTitle(conversation.getTitle());
+        copy.setLlmModel(conversation.getLlmModel());
+        copy.setDeviceId(conversation.getDeviceId());
+        copy.setExt(ExtConverter.copy(conversation.getExt()));
+        copy.setChatList(new ArrayList<>());
+        copy.setGmtCreate(conversation.getGmtCreate());
+        copy.setGmtModified(conversation.getGmtModified());
+        return copy;
+    }
+
+    /**
+     * 加载窗口前的版本
+     */
+    public static class TailVersion {
+
+        private final long local;
+
+        private final long remote;
+
+        TailVersion(long local, long remote) {
+            this.local = local;
+            this.remote = remote;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.uestc.weglas.core.callback;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.core.client.MqttInboundMessage;
+import org.uestc.weglas.util.log.LogUtil;
+
+/**
+ * 记录入站消息摘要，不序列化消息体
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class LoggingMqttMessageHandler implements MqttMessageHandler {
+
+    private static final Logger logger = LogManager.getLogger(LoggingMqttMessageHandler.class);
+
+    @Override
+    public boolean supports(String topic) {
+        return logger.isDebugEnabled();
+    }
+
+    @Override
+    public void handle(MqttInboundMessage message) {
+        LogUtil.debug(logger, "[接收消息]:topic=" + message.getTopic()
+                + ",id=" + message.getMessageId()
+                + ",qos=" + message.getQos()
+                + ",size=" + message.getPayloadSize());
+    }
+}
@@ -1,24 +1,28 @@
 package org.uestc.weglas.core.callback;
 
 
-import com.alibaba.fastjson2.JSON;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.uestc.weglas.core.client.MqttInboundDispatcher;
+import org.uestc.weglas.core.client.MqttInboundMessage;
 import org.uestc.weglas.util.log.LogUtil;
 
 /**
  * mqtt订阅回调
- * TODO 待完善硬件交互部分
  */
 @Component
 public class MqttConsumerCallBack implements MqttCallback {
 
     protected static final Logger logger = LogManager.getLogger(MqttConsumerCallBack.class);
 
+    @Autowired
+    private MqttInboundDispatcher inboundDispatcher;
+
     /**
      * 客户端断开连接的回调
      */
@@ -28,18 +32,20 @@ public class MqttConsumerCallBack implements MqttCallback {
     }
 
     /**
-     * 消息到达的回调
+     * 消息到达的回调，运行在Paho回调线程，只做投递不做处理
      */
     @Override
     public void messageArrived(String topic, MqttMessage message) {
-        LogUtil.info(logger, "[接收消息]:", JSON.toJSONString(message));
+        inboundDispatcher.dispatch(new MqttInboundMessage(topic, message));
     }
 
     /**
-     * 消息发布成功的回调
+     * 消息发布成功的回调，每条消息一次，只输出debug日志
      */
     @Override
     public void deliveryComplete(IMqttDeliveryToken iMqttDeliveryToken) {
-        LogUtil.info(logger, "client delivery success.");
+        if (logger.isDebugEnabled()) {
+            LogUtil.debug(logger, "client delivery success,messageId=" + iMqttDeliveryToken.getMessageId());
+        }
     }
 }
@@ -0,0 +1,30 @@
+package org.uestc.weglas.core.callback;
+
+import org.uestc.weglas.core.client.MqttInboundMessage;
+
+/**
+ * mqtt入站消息处理器
+ * 由MqttInboundDispatcher在工作线程中调用，同一主题的消息按到达顺序串行处理。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public interface MqttMessageHandler {
+
+    /**
+     * 需要额外订阅的主题过滤器，默认不订阅
+     */
+    default String topicFilter() {
+        return null;
+    }
+
+    /**
+     * 是否处理该主题
+     */
+    boolean supports(String topic);
+
+    /**
+     * 处理消息
+     */
+    void handle(MqttInboundMessage message) throws Exception;
+}
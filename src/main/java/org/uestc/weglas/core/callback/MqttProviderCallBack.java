@@ -11,7 +11,6 @@ import org.uestc.weglas.util.log.LogUtil;
 
 /**
  * mqtt provider callback
- * TODO 待完善硬件交互部分
  */
 @Component
 public class MqttProviderCallBack implements MqttCallback {
@@ -27,20 +26,25 @@ public class MqttProviderCallBack implements MqttCallback {
     }
 
     /**
-     * 消息到达的回调
+     * 消息到达的回调，发送端不订阅主题，只输出debug日志
      */
     @Override
     public void messageArrived(String s, MqttMessage mqttMessage) {
-        LogUtil.info(logger, "message arrived,message=", mqttMessage);
+        if (logger.isDebugEnabled()) {
+            LogUtil.debug(logger, "message arrived,topic=" + s + ",messageId=" + mqttMessage.getId());
+        }
     }
 
     /**
-     * 消息发布成功的回调
+     * 消息发布成功的回调，每条消息一次，只输出debug日志
      */
     @Override
     public void deliveryComplete(IMqttDeliveryToken iMqttDeliveryToken) {
-        IMqttAsyncClient client = iMqttDeliveryToken.getClient();
-        LogUtil.info(logger, "deliver complete,clientId=", client.getClientId());
+        if (logger.isDebugEnabled()) {
+            IMqttAsyncClient client = iMqttDeliveryToken.getClient();
+            LogUtil.debug(logger, "deliver complete,clientId=" + client.getClientId()
+                    + ",messageId=" + iMqttDeliveryToken.getMessageId());
+        }
     }
 
 }
@@ -0,0 +1,101 @@
+package org.uestc.weglas.core.client;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.channel.BootstrapHandlers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型服务的http客户端，同步和流式聊天共用一个连接池
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Configuration
+public class AiWebClientConfiguration {
+
+    private static final String IDLE_HANDLER_NAME = "aiIdleStateHandler";
+
+    private static final String READ_TIMEOUT_HANDLER_NAME = "aiReadTimeoutHandler";
+
+    /**
+     * 连接池最大连接数
+     */
+    @Value("${spring.ai.http.max-connections:200}")
+    private int maxConnections;
+
+    /**
+     * 连接池满时获取连接的最大等待时间，单位毫秒
+     */
+    @Value("${spring.ai.http.acquire-timeout:5000}")
+    private long acquireTimeout;
+
+    /**
+     * 建连超时时间，单位毫秒
+     */
+    @Value("${spring.ai.http.connect-timeout:3000}")
+    private int connectTimeout;
+
+    /**
+     * 读超时时间，请求期间超过该时间没有收到数据则关闭连接，单位毫秒
+     */
+    @Value("${spring.ai.http.read-timeout:60000}")
+    private long readTimeout;
+
+    /**
+     * 连接在池中的最大空闲时间，超时后关闭并从池中剔除，单位毫秒；请求进行中的连接不受影响
+     */
+    @Value("${spring.ai.http.max-idle-time:90000}")
+    private long maxIdleTime;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider aiConnectionProvider() {
+        return ConnectionProvider.fixed("ai-chat", maxConnections, acquireTimeout);
+    }
+
+    @Bean
+    public WebClient aiWebClient(WebClient.Builder builder, ConnectionProvider aiConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(aiConnectionProvider)
+                .tcpConfiguration(tcpClient -> tcpClient
+                        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                        // 挂在channel初始化阶段，连接归还到池中后依然生效
+                        .bootstrap(bootstrap -> BootstrapHandlers.updateConfiguration(bootstrap, IDLE_HANDLER_NAME,
+                                (observer, channel) -> channel.pipeline().addFirst(
+                                        new IdleStateHandler(0, 0, maxIdleTime, TimeUnit.MILLISECONDS),
+                                        new IdleConnectionCloser()))))
+                // 读超时只在请求期间生效，连接归还到池中时自动移除
+                .doOnRequest((request, connection) -> connection.addHandlerLast(READ_TIMEOUT_HANDLER_NAME,
+                        new ReadTimeoutHandler(readTimeout, TimeUnit.MILLISECONDS)));
+
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+
+    /**
+     * 池中的空闲连接超时后关闭，挂着读超时handler说明请求进行中，由读超时负责
+     */
+    private static class IdleConnectionCloser extends ChannelDuplexHandler {
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                if (ctx.pipeline().get(READ_TIMEOUT_HANDLER_NAME) == null) {
+                    ctx.close();
+                }
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+    }
+}
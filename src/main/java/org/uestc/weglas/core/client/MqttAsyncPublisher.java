@@ -0,0 +1,243 @@
+package org.uestc.weglas.core.client;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.log.LogUtil;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * mqtt异步发送
+ * 消息先进入有界队列，由发送线程在in-flight窗口内交给MqttAsyncClient，
+ * 收到broker确认（QoS 0为写出）后完成future并释放窗口。
+ * 断线期间发送线程暂停，队列即为离线缓冲，重连后按入队顺序继续发送。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class MqttAsyncPublisher {
+
+    private static final Logger logger = LogManager.getLogger(MqttAsyncPublisher.class);
+
+    private final MqttAsyncClient client;
+
+    private final BlockingQueue<PendingPublish> queue;
+
+    private final Semaphore inflight;
+
+    private final MqttOverflowPolicy overflowPolicy;
+
+    /**
+     * BLOCK策略下的最大等待时间，单位毫秒
+     */
+    private final long blockTimeout;
+
+    private final Thread dispatcher;
+
+    private volatile boolean running = true;
+
+    private final AtomicLong published = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * 已入队但未收到确认的消息字节数
+     */
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    private final Object connectedMonitor = new Object();
+
+    private final IMqttActionListener deliveryListener = new IMqttActionListener() {
+        @Override
+        public void onSuccess(IMqttToken token) {
+            inflight.release();
+            published.incrementAndGet();
+            complete((PendingPublish) token.getUserContext(), null);
+        }
+
+        @Override
+        public void onFailure(IMqttToken token, Throwable exception) {
+            inflight.release();
+            failed.incrementAndGet();
+            complete((PendingPublish) token.getUserContext(), exception);
+        }
+    };
+
+    public MqttAsyncPublisher(MqttAsyncClient client, int maxInflight, int queueCapacity,
+                              MqttOverflowPolicy overflowPolicy, long blockTimeout) {
+        this.client = client;
+        this.inflight = new Semaphore(maxInflight);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeout = blockTimeout;
+        this.dispatcher = new Thread(this::dispatchLoop, "mqtt-publisher-" + client.getClientId());
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * 异步发送
+     *
+     * @return broker确认后完成；队列满或发送失败时异常完成
+     */
+    public CompletableFuture<Void> publish(String topic, MqttMessage message) {
+        PendingPublish pending = new PendingPublish(topic, message);
+        if (!running) {
+            pending.future.completeExceptionally(new ManagerBizException(ResultEnum.SYSTEM_BUSY));
+            return pending.future;
+        }
+        pendingBytes.addAndGet(pending.size);
+        if (!enqueue(pending)) {
+            dropped.incrementAndGet();
+            complete(pending, new ManagerBizException(ResultEnum.SYSTEM_BUSY));
+        }
+        return pending.future;
+    }
+
+    /**
+     * 连接建立后唤醒发送线程
+     */
+    public void signalConnected() {
+        synchronized (connectedMonitor) {
+            connectedMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * 停止发送线程，队列中未发送的消息异常完成
+     */
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        PendingPublish pending;
+        while ((pending = queue.poll()) != null) {
+            complete(pending, new ManagerBizException(ResultEnum.SYSTEM_BUSY));
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getInflightCount() {
+        return client.getInFlightMessageCount();
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    private boolean enqueue(PendingPublish pending) {
+        switch (overflowPolicy) {
+            case DROP_NEW:
+                return queue.offer(pending);
+            case DROP_OLDEST:
+                while (!queue.offer(pending)) {
+                    PendingPublish oldest = queue.poll();
+                    if (oldest != null) {
+                        dropped.incrementAndGet();
+                        complete(oldest, new ManagerBizException(ResultEnum.SYSTEM_BUSY));
+                    }
+                }
+                return true;
+            case BLOCK:
+            default:
+                try {
+                    return queue.offer(pending, blockTimeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            PendingPublish pending;
+            try {
+                pending = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                awaitConnected();
+                inflight.acquire();
+            } catch (InterruptedException e) {
+                complete(pending, new ManagerBizException(ResultEnum.SYSTEM_BUSY));
+                break;
+            }
+            try {
+                client.publish(pending.topic, pending.message, pending, deliveryListener);
+            } catch (MqttException | RuntimeException e) {
+                inflight.release();
+                failed.incrementAndGet();
+                LogUtil.warn(logger, e, "client publish failed,topic=" + pending.topic);
+                complete(pending, e);
+            }
+        }
+    }
+
+    /**
+     * 断线期间阻塞发送线程，消息留在队列中
+     */
+    private void awaitConnected() throws InterruptedException {
+        synchronized (connectedMonitor) {
+            while (running && !client.isConnected()) {
+                // 定时醒来检查，避免错过通知
+                connectedMonitor.wait(1000L);
+            }
+        }
+    }
+
+    private void complete(PendingPublish pending, Throwable e) {
+        pendingBytes.addAndGet(-pending.size);
+        if (e == null) {
+            pending.future.complete(null);
+        } else {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    private static class PendingPublish {
+
+        private final String topic;
+
+        private final MqttMessage message;
+
+        private final int size;
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingPublish(String topic, MqttMessage message) {
+            this.topic = topic;
+            this.message = message;
+            this.size = message.getPayload().length;
+        }
+    }
+}
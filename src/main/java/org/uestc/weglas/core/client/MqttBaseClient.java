@@ -1,15 +1,29 @@
 package org.uestc.weglas.core.client;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
-import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
 import org.springframework.beans.factory.annotation.Value;
 import org.uestc.weglas.util.log.LogUtil;
 
 import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.uestc.weglas.core.model.BizConstants.*;
 
@@ -21,26 +35,89 @@ public abstract class MqttBaseClient {
 
     protected static final Logger logger = LogManager.getLogger(MqttBaseClient.class);
 
+    private static final String PERSISTENCE_FILE = "file";
+
 
     @Value("${spring.mqtt.username}")
     private String username;
     @Value("${spring.mqtt.password}")
     private String password;
 
+    /**
+     * 最大in-flight消息数，即未收到broker确认的QoS 1/2消息数
+     */
+    @Value("${spring.mqtt.publish.max-inflight:100}")
+    protected int maxInflight;
+
+    /**
+     * 是否清空session，false时broker保留订阅和未确认消息，需配合file持久化
+     */
+    @Value("${spring.mqtt.session.clean-session:true}")
+    private boolean cleanSession;
+
+    /**
+     * 未确认消息的持久化方式 memory/file
+     */
+    @Value("${spring.mqtt.session.persistence:memory}")
+    private String persistence;
+
+    @Value("${spring.mqtt.session.persistence-dir:./data/mqtt}")
+    private String persistenceDir;
+
+    /**
+     * 重连初始间隔，单位毫秒，每次失败翻倍
+     */
+    @Value("${spring.mqtt.reconnect.initial-delay:1000}")
+    private long reconnectInitialDelay;
+
+    /**
+     * 重连最大间隔，单位毫秒
+     */
+    @Value("${spring.mqtt.reconnect.max-delay:60000}")
+    private long reconnectMaxDelay;
+
     /**
      * 客户端对象
      */
-    protected MqttClient client;
+    protected MqttAsyncClient client;
+
+    /**
+     * 已订阅的主题，重连后重新订阅
+     */
+    private final Set<String> subscriptions = new CopyOnWriteArraySet<>();
+
+    private final ScheduledExecutorService reconnectExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("mqtt-reconnect-%d").setDaemon(true).build());
+
+    private MqttConnectOptions options;
+
+    private volatile boolean closing;
+
+    private volatile long reconnectDelay;
+
+    private final AtomicLong reconnectCount = new AtomicLong();
+
+    private final AtomicLong connectionLostCount = new AtomicLong();
+
+    /**
+     * 按配置创建未确认消息的持久化
+     */
+    protected MqttClientPersistence createPersistence() {
+        if (PERSISTENCE_FILE.equalsIgnoreCase(persistence)) {
+            return new MqttDefaultFilePersistence(persistenceDir);
+        }
+        return new MemoryPersistence();
+    }
 
     /**
-     * 客户端连接服务端
+     * 客户端连接服务端，首次连接失败时按退避间隔在后台重试，不抛出异常
      */
-    public void connect(String clientId, MqttCallback callback) throws MqttException {
+    public void connect(String clientId, MqttCallback callback) {
         //连接设置
-        MqttConnectOptions options = new MqttConnectOptions();
+        options = new MqttConnectOptions();
         //是否清空session，设置为false表示服务器会保留客户端的连接记录，客户端重连之后能获取到服务器在客户端断开连接期间推送的消息
         //设置为true表示每次连接到服务端都是以新的身份
-        options.setCleanSession(true);
+        options.setCleanSession(cleanSession);
         //设置连接用户名
         options.setUserName(username);
         //设置连接密码
@@ -51,19 +128,22 @@ public abstract class MqttBaseClient {
         options.setKeepAliveInterval(MQTT_KEEP_ALIVE);
         //设置遗嘱消息的话题，若客户端和服务器之间的连接意外断开，服务器将发布客户端的遗嘱信息
         options.setWill("willTopic", (clientId + "与服务器断开连接").getBytes(), MQTT_QOS, MQTT_RETAINED);
-        //设置回调
-        client.setCallback(callback);
-        client.connect(options);
+        //设置未确认消息窗口
+        options.setMaxInflight(maxInflight);
+        //设置回调，连接建立后重新订阅，断开后自动重连
+        client.setCallback(new ReconnectCallback(callback));
+        reconnectDelay = reconnectInitialDelay;
+        doConnect();
     }
 
     /**
-     * 客户端连接服务端
+     * 订阅主题，未连接时在连接建立后订阅
      */
     public void subscribe(String topic) throws MqttException {
-        //订阅主题
-        //消息等级，和主题数组一一对应，服务端将按照指定等级给订阅了主题的客户端推送消息
-        //订阅主题
-        client.subscribe(new String[]{topic}, new int[]{MQTT_QOS});
+        subscriptions.add(topic);
+        if (client.isConnected()) {
+            doSubscribe(topic);
+        }
     }
 
     /**
@@ -71,10 +151,124 @@ public abstract class MqttBaseClient {
      */
     @PreDestroy
     public void disconnect() {
+        closing = true;
+        reconnectExecutor.shutdownNow();
         try {
-            client.disconnect();
+            if (client.isConnected()) {
+                client.disconnect().waitForCompletion(MQTT_CONNECT_TIMEOUT * 1000L);
+            }
+            client.close();
         } catch (MqttException e) {
             LogUtil.error(logger, e, "client disconnect failed.");
         }
     }
+
+    public boolean isConnected() {
+        return client != null && client.isConnected();
+    }
+
+    /**
+     * 断线后重连成功的次数
+     */
+    public long getReconnectCount() {
+        return reconnectCount.get();
+    }
+
+    public long getConnectionLostCount() {
+        return connectionLostCount.get();
+    }
+
+    /**
+     * 连接建立后的回调，首次连接时 reconnect 为false
+     */
+    protected void onConnected(boolean reconnect) {
+    }
+
+    private void doConnect() {
+        if (closing) {
+            return;
+        }
+        try {
+            client.connect(options).waitForCompletion(MQTT_CONNECT_TIMEOUT * 1000L);
+        } catch (MqttException e) {
+            LogUtil.warn(logger, "client connect failed,clientId=", client.getClientId(),
+                    ",retryAfter=", reconnectDelay, ",reason=", e.getMessage());
+            scheduleReconnect();
+        }
+    }
+
+    private void scheduleReconnect() {
+        if (closing) {
+            return;
+        }
+        long delay = reconnectDelay;
+        reconnectDelay = Math.min(reconnectDelay * 2, reconnectMaxDelay);
+        try {
+            reconnectExecutor.schedule(this::doConnect, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 关闭中
+        }
+    }
+
+    private void doSubscribe(String topic) throws MqttException {
+        //订阅主题
+        //消息等级，和主题数组一一对应，服务端将按照指定等级给订阅了主题的客户端推送消息
+        client.subscribe(new String[]{topic}, new int[]{MQTT_QOS});
+    }
+
+    /**
+     * 包装业务回调，处理重新订阅和断线重连
+     */
+    private class ReconnectCallback implements MqttCallbackExtended {
+
+        private final MqttCallback delegate;
+
+        private boolean connectedBefore;
+
+        ReconnectCallback(MqttCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void connectComplete(boolean reconnect, String serverURI) {
+            boolean isReconnect = connectedBefore;
+            connectedBefore = true;
+            if (isReconnect) {
+                reconnectCount.incrementAndGet();
+            }
+            reconnectDelay = reconnectInitialDelay;
+            LogUtil.info(logger, "client connected,clientId=", client.getClientId(), ",server=", serverURI,
+                    ",reconnect=", isReconnect);
+            for (String topic : subscriptions) {
+                try {
+                    doSubscribe(topic);
+                } catch (MqttException e) {
+                    LogUtil.error(logger, e, "client subscribe failed,topic=" + topic);
+                }
+            }
+            onConnected(isReconnect);
+        }
+
+        @Override
+        public void connectionLost(Throwable throwable) {
+            connectionLostCount.incrementAndGet();
+            delegate.connectionLost(throwable);
+            // 回调线程中不能同步重连，交给重连线程
+            try {
+                reconnectExecutor.execute(MqttBaseClient.this::doConnect);
+            } catch (RejectedExecutionException e) {
+                // 关闭中
+            }
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) throws Exception {
+            delegate.messageArrived(topic, message);
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+            delegate.deliveryComplete(token);
+        }
+    }
 }
@@ -1,16 +1,17 @@
 package org.uestc.weglas.core.client;
 
 
-import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttException;
-import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.uestc.weglas.core.callback.MqttConsumerCallBack;
+import org.uestc.weglas.core.callback.MqttMessageHandler;
 import org.uestc.weglas.util.log.LogUtil;
 
 import javax.annotation.PostConstruct;
+import java.util.List;
 
 /**
  * mqtt订阅客户端
@@ -28,6 +29,9 @@ public class MqttConsumerClient extends MqttBaseClient {
     @Autowired
     private MqttConsumerCallBack mqttConsumerCallBack;
 
+    @Autowired
+    private List<MqttMessageHandler> handlers;
+
     /**
      * 在bean初始化后连接到服务器
      */
@@ -35,9 +39,16 @@ public class MqttConsumerClient extends MqttBaseClient {
     public void init() {
         try {
             //创建MQTT客户端对象
-            client = new MqttClient(hostUrl, clientId, new MemoryPersistence());
-            connect(clientId, mqttConsumerCallBack);
+            client = new MqttAsyncClient(hostUrl, clientId, createPersistence());
             subscribe(topic);
+            // 订阅各处理器声明的主题
+            for (MqttMessageHandler handler : handlers) {
+                if (handler.topicFilter() != null) {
+                    subscribe(handler.topicFilter());
+                }
+            }
+            // 连接建立后订阅以上主题
+            connect(clientId, mqttConsumerCallBack);
         } catch (MqttException e) {
             LogUtil.error(logger, e, "client init failed.");
         }
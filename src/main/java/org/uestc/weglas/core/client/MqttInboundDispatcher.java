@@ -0,0 +1,290 @@
+package org.uestc.weglas.core.client;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.core.callback.MqttMessageHandler;
+import org.uestc.weglas.util.log.LogUtil;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * mqtt入站消息分发
+ * Paho回调线程只负责按主题哈希投递到对应分片队列，每个分片一个工作线程，
+ * 保证同一主题（设备）的消息顺序处理，不同主题之间互不阻塞。
+ * BLOCK策略下队列满时回调线程一直等待直到入队，从而停止读取socket，把背压传递给broker；
+ * 等待期间心跳响应也无法读取，长时间阻塞可能触发断线重连。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class MqttInboundDispatcher {
+
+    private static final Logger logger = LogManager.getLogger(MqttInboundDispatcher.class);
+
+    /**
+     * 分片数，即工作线程数
+     */
+    @Value("${spring.mqtt.inbound.stripes:4}")
+    private int stripeCount;
+
+    /**
+     * 每个分片的队列容量
+     */
+    @Value("${spring.mqtt.inbound.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${spring.mqtt.inbound.overflow-policy:BLOCK}")
+    private MqttOverflowPolicy overflowPolicy;
+
+    /**
+     * BLOCK策略下队列满时的告警间隔，每等待该时间输出一次告警后继续等待，单位毫秒
+     */
+    @Value("${spring.mqtt.inbound.block-timeout:1000}")
+    private long blockTimeout;
+
+    /**
+     * 关闭时等待队列排空的时间，单位毫秒
+     */
+    @Value("${spring.mqtt.inbound.shutdown-timeout:5000}")
+    private long shutdownTimeout;
+
+    @Autowired
+    private List<MqttMessageHandler> handlers;
+
+    private Stripe[] stripes;
+
+    private volatile boolean running;
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong processed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong blocked = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(i, queueCapacity);
+        }
+        running = true;
+        for (Stripe stripe : stripes) {
+            stripe.worker.start();
+        }
+    }
+
+    /**
+     * 在Paho回调线程中调用，投递到主题所在分片
+     *
+     * @return 是否投递成功，失败表示消息被丢弃
+     */
+    public boolean dispatch(MqttInboundMessage message) {
+        received.incrementAndGet();
+        if (!running) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        Stripe stripe = stripeOf(message.getTopic());
+        if (!enqueue(stripe.queue, message)) {
+            dropped.incrementAndGet();
+            LogUtil.warn(logger, "inbound queue full, message dropped,topic=", message.getTopic(),
+                    ",stripe=", stripe.index);
+            return false;
+        }
+        stripe.updateMaxDepth();
+        return true;
+    }
+
+    /**
+     * 停止接收，等待队列排空后中断工作线程
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        long deadline = System.currentTimeMillis() + shutdownTimeout;
+        for (Stripe stripe : stripes) {
+            stripe.stopping = true;
+        }
+        for (Stripe stripe : stripes) {
+            try {
+                stripe.worker.join(Math.max(1L, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Stripe stripe : stripes) {
+            stripe.worker.interrupt();
+            if (!stripe.queue.isEmpty()) {
+                dropped.addAndGet(stripe.queue.size());
+                LogUtil.warn(logger, "inbound dispatcher shutdown, drop pending messages,stripe=", stripe.index,
+                        ",size=", stripe.queue.size());
+                stripe.queue.clear();
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Stripe stripe : stripes) {
+            depth += stripe.queue.size();
+        }
+        return depth;
+    }
+
+    public int getQueueDepth(int stripe) {
+        return stripes[stripe].queue.size();
+    }
+
+    /**
+     * 分片队列深度的历史最大值
+     */
+    public int getMaxQueueDepth(int stripe) {
+        return stripes[stripe].maxDepth;
+    }
+
+    public int getStripeCount() {
+        return stripeCount;
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * BLOCK策略下等待超过block-timeout的次数
+     */
+    public long getBlocked() {
+        return blocked.get();
+    }
+
+    private Stripe stripeOf(String topic) {
+        int hash = topic.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[(hash & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    private boolean enqueue(BlockingQueue<MqttInboundMessage> queue, MqttInboundMessage message) {
+        switch (overflowPolicy) {
+            case DROP_NEW:
+                return queue.offer(message);
+            case DROP_OLDEST:
+                while (!queue.offer(message)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                return true;
+            case BLOCK:
+            default:
+                return block(queue, message);
+        }
+    }
+
+    /**
+     * 一直等到入队成功，消息返回Paho后即被确认，超时放弃会丢失QoS 1消息。
+     * 每等待一个block-timeout输出一次告警，只有关闭或线程被中断时才放弃
+     */
+    private boolean block(BlockingQueue<MqttInboundMessage> queue, MqttInboundMessage message) {
+        long start = System.currentTimeMillis();
+        try {
+            while (!queue.offer(message, blockTimeout, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    return false;
+                }
+                blocked.incrementAndGet();
+                LogUtil.warn(logger, "inbound queue full, still waiting,topic=", message.getTopic(),
+                        ",waited=", System.currentTimeMillis() - start);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void handle(MqttInboundMessage message) {
+        for (MqttMessageHandler handler : handlers) {
+            if (!handler.supports(message.getTopic())) {
+                continue;
+            }
+            try {
+                handler.handle(message);
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                LogUtil.error(logger, e, "inbound message handle failed,topic=" + message.getTopic()
+                        + ",handler=" + handler.getClass().getSimpleName());
+            }
+        }
+        processed.incrementAndGet();
+    }
+
+    private class Stripe {
+
+        private final int index;
+
+        private final BlockingQueue<MqttInboundMessage> queue;
+
+        private final Thread worker;
+
+        private volatile boolean stopping;
+
+        private volatile int maxDepth;
+
+        Stripe(int index, int capacity) {
+            this.index = index;
+            this.queue = new LinkedBlockingQueue<>(capacity);
+            this.worker = new Thread(this::run, "mqtt-inbound-" + index);
+            this.worker.setDaemon(true);
+        }
+
+        void updateMaxDepth() {
+            int depth = queue.size();
+            if (depth > maxDepth) {
+                maxDepth = depth;
+            }
+        }
+
+        private void run() {
+            while (true) {
+                MqttInboundMessage message;
+                try {
+                    message = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (message != null) {
+                    handle(message);
+                } else if (stopping) {
+                    return;
+                }
+            }
+        }
+    }
+}
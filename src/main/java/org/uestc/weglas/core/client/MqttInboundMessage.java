@@ -0,0 +1,86 @@
+package org.uestc.weglas.core.client;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.uestc.weglas.core.codec.MqttPayloadCodecs;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * mqtt入站消息
+ * payload直接包装Paho持有的字节数组，不做拷贝和序列化，处理方只读访问。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class MqttInboundMessage {
+
+    private final String topic;
+
+    private final int messageId;
+
+    private final int qos;
+
+    private final boolean duplicate;
+
+    private final long receivedAt;
+
+    private final byte[] payloadBytes;
+
+    private final ByteBuffer payload;
+
+    public MqttInboundMessage(String topic, MqttMessage message) {
+        this.topic = topic;
+        this.messageId = message.getId();
+        this.qos = message.getQos();
+        this.duplicate = message.isDuplicate();
+        this.receivedAt = System.currentTimeMillis();
+        this.payloadBytes = message.getPayload();
+        this.payload = ByteBuffer.wrap(payloadBytes).asReadOnlyBuffer();
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    public int getQos() {
+        return qos;
+    }
+
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    /**
+     * 只读视图，每次调用返回独立的position
+     */
+    public ByteBuffer getPayload() {
+        return payload.duplicate();
+    }
+
+    public int getPayloadSize() {
+        return payload.remaining();
+    }
+
+    /**
+     * 按UTF-8解码payload，仅在需要文本时调用
+     */
+    public String getPayloadAsString() {
+        return StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+    }
+
+    /**
+     * 按主题对应的编码直接从payload字节解码，不经过中间字符串
+     */
+    public <T> T decodePayload(MqttPayloadCodecs codecs, Class<T> clazz) {
+        return codecs.decode(topic, payloadBytes, clazz);
+    }
+}
@@ -0,0 +1,25 @@
+package org.uestc.weglas.core.client;
+
+/**
+ * mqtt发送队列满时的处理策略
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public enum MqttOverflowPolicy {
+
+    /**
+     * 阻塞调用方，超过等待时间后失败
+     */
+    BLOCK,
+
+    /**
+     * 丢弃新消息
+     */
+    DROP_NEW,
+
+    /**
+     * 丢弃队列中最早的消息
+     */
+    DROP_OLDEST,
+}
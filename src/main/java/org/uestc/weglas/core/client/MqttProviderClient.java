@@ -4,16 +4,22 @@ package org.uestc.weglas.core.client;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.eclipse.paho.client.mqttv3.*;
-import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.uestc.weglas.core.callback.MqttProviderCallBack;
+import org.uestc.weglas.core.codec.MqttPayloadCodec;
+import org.uestc.weglas.core.codec.MqttPayloadCodecs;
 import org.uestc.weglas.core.model.BizConstants;
 import org.uestc.weglas.util.log.LogUtil;
 
 import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.uestc.weglas.core.model.BizConstants.MQTT_RETAINED;
 
@@ -34,9 +40,29 @@ public class MqttProviderClient extends MqttBaseClient {
     @Value("${spring.mqtt.client.provider.topic}")
     private String topic;
 
+    /**
+     * 发送队列容量
+     */
+    @Value("${spring.mqtt.publish.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${spring.mqtt.publish.overflow-policy:BLOCK}")
+    private MqttOverflowPolicy overflowPolicy;
+
+    /**
+     * BLOCK策略下队列满时的最大等待时间，单位毫秒
+     */
+    @Value("${spring.mqtt.publish.block-timeout:1000}")
+    private long blockTimeout;
+
     @Autowired
     private MqttProviderCallBack mqttProviderCallBack;
 
+    @Autowired
+    private MqttPayloadCodecs payloadCodecs;
+
+    private MqttAsyncPublisher publisher;
+
     /**
      * 在bean初始化后连接到服务器
      */
@@ -44,31 +70,92 @@ public class MqttProviderClient extends MqttBaseClient {
     public void init() {
         try {
             //创建MQTT客户端对象
-            client = new MqttClient(hostUrl, clientId, new MemoryPersistence());
-            connect(clientId, mqttProviderCallBack);
+            client = new MqttAsyncClient(hostUrl, clientId, createPersistence());
+            publisher = new MqttAsyncPublisher(client, maxInflight, queueCapacity, overflowPolicy, blockTimeout);
             subscribe(topic);
+            connect(clientId, mqttProviderCallBack);
         } catch (MqttException e) {
             LogUtil.error(logger, e, "client init failed.");
         }
     }
 
+    /**
+     * 同步发送到默认主题，等待broker确认
+     */
     public void publish(String message) {
+        try {
+            publishAsync(message).join();
+        } catch (CompletionException e) {
+            LogUtil.error(logger, e.getCause(), "client publish failed.");
+        }
+    }
+
+    /**
+     * 异步发送到默认主题
+     */
+    public CompletableFuture<Void> publishAsync(String message) {
+        return publishAsync(topic, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 异步发送
+     *
+     * @param topic   主题
+     * @param payload 消息体
+     * @return broker确认后完成；队列满或发送失败时异常完成
+     */
+    public CompletableFuture<Void> publishAsync(String topic, byte[] payload) {
+        return publishAsync(topic, payload, MQTT_RETAINED);
+    }
+
+    /**
+     * 异步发送
+     *
+     * @param retained 是否保留消息，流式分片等临时消息不应保留
+     */
+    public CompletableFuture<Void> publishAsync(String topic, byte[] payload, boolean retained) {
         MqttMessage mqttMessage = new MqttMessage();
         mqttMessage.setQos(BizConstants.MQTT_QOS);
-        mqttMessage.setRetained(MQTT_RETAINED);
-        mqttMessage.setPayload(message.getBytes());
-        //主题的目的地，用于发布/订阅信息
-        MqttTopic mqttTopic = client.getTopic(topic);
-        //提供一种机制来跟踪消息的传递进度
-        //用于在以非阻塞方式（在后台运行）执行发布是跟踪消息的传递进度
-        MqttDeliveryToken token;
-        try {
-            //将指定消息发布到主题，但不等待消息传递完成，返回的token可用于跟踪消息的传递状态
-            //一旦此方法干净地返回，消息就已被客户端接受发布，当连接可用，将在后台完成消息传递。
-            token = mqttTopic.publish(mqttMessage);
-            token.waitForCompletion();
-        } catch (MqttException e) {
-            LogUtil.error(logger, e, "client publish failed.");
+        mqttMessage.setRetained(retained);
+        mqttMessage.setPayload(payload);
+        return publisher.publish(topic, mqttMessage);
+    }
+
+    /**
+     * 按主题配置的编码序列化后异步发送，允许压缩的主题超过阈值时压缩
+     */
+    public CompletableFuture<Void> publishValueAsync(String topic, Object value, boolean retained) {
+        return publishValueAsync(topic, payloadCodecs.codecFor(topic), value, retained);
+    }
+
+    /**
+     * 使用指定编码序列化后异步发送，如应答沿用请求的编码
+     */
+    public CompletableFuture<Void> publishValueAsync(String topic, MqttPayloadCodec codec, Object value,
+                                                     boolean retained) {
+        return publishAsync(topic, payloadCodecs.encode(topic, codec, value), retained);
+    }
+
+    public MqttAsyncPublisher getPublisher() {
+        return publisher;
+    }
+
+    /**
+     * 连接建立后恢复发送离线期间缓冲的消息
+     */
+    @Override
+    protected void onConnected(boolean reconnect) {
+        publisher.signalConnected();
+    }
+
+    /**
+     * 先停止发送线程再断开连接
+     */
+    @Override
+    public void disconnect() {
+        if (publisher != null) {
+            publisher.shutdown();
         }
+        super.disconnect();
     }
 }
@@ -0,0 +1,31 @@
+package org.uestc.weglas.core.codec;
+
+import com.alibaba.fastjson2.JSON;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 json文本，默认编码，兼容现有设备
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class JsonPayloadCodec implements MqttPayloadCodec {
+
+    public static final String NAME = "json";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSON.toJSONBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, int offset, int length, Class<T> clazz) {
+        return JSON.parseObject(bytes, offset, length, StandardCharsets.UTF_8, clazz);
+    }
+}
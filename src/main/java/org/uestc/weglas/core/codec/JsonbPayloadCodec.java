@@ -0,0 +1,29 @@
+package org.uestc.weglas.core.codec;
+
+import com.alibaba.fastjson2.JSONB;
+
+/**
+ * fastjson2 JSONB二进制格式，字段名和数值紧凑编码，适合高频遥测
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class JsonbPayloadCodec implements MqttPayloadCodec {
+
+    public static final String NAME = "jsonb";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSONB.toBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, int offset, int length, Class<T> clazz) {
+        return JSONB.parseObject(bytes, offset, length, clazz);
+    }
+}
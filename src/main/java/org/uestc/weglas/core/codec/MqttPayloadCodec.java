@@ -0,0 +1,19 @@
+package org.uestc.weglas.core.codec;
+
+/**
+ * mqtt消息体编解码
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public interface MqttPayloadCodec {
+
+    /**
+     * 编码名称，用于主题配置
+     */
+    String name();
+
+    byte[] encode(Object value);
+
+    <T> T decode(byte[] bytes, int offset, int length, Class<T> clazz);
+}
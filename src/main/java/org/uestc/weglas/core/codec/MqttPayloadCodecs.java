@@ -0,0 +1,233 @@
+package org.uestc.weglas.core.codec;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.util.exception.AssertUtil;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.log.LogUtil;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * mqtt编解码选择
+ * 按主题过滤器匹配编码（MQTT 3.1.1没有user property，只能通过主题约定），未匹配时使用默认编码。
+ * 只有显式配置的主题在编码结果超过阈值时gzip压缩，已有设备不受影响；
+ * 解码时根据gzip魔数自动识别，设备可自行决定是否压缩，解压后超过上限的消息拒绝。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class MqttPayloadCodecs {
+
+    private static final Logger logger = LogManager.getLogger(MqttPayloadCodecs.class);
+
+    private static final int GZIP_MAGIC_0 = 0x1f;
+
+    private static final int GZIP_MAGIC_1 = 0x8b;
+
+    private static final String RULE_SEPARATOR = "=";
+
+    /**
+     * 默认编码
+     */
+    @Value("${spring.mqtt.codec.default:json}")
+    private String defaultCodecName;
+
+    /**
+     * 主题编码规则，格式为 主题过滤器=编码，多个以逗号分隔，按顺序匹配
+     */
+    @Value("${spring.mqtt.codec.topic-codecs:}")
+    private String[] topicCodecs;
+
+    /**
+     * 允许压缩的主题过滤器，多个以逗号分隔，为空时不压缩
+     */
+    @Value("${spring.mqtt.codec.compress-topics:}")
+    private String[] compressTopics;
+
+    /**
+     * 超过该字节数时压缩，小于等于0不压缩
+     */
+    @Value("${spring.mqtt.codec.compress-threshold:1024}")
+    private int compressThreshold;
+
+    /**
+     * 解压后的最大字节数，防止压缩炸弹
+     */
+    @Value("${spring.mqtt.codec.max-decompressed-bytes:1048576}")
+    private int maxDecompressedBytes;
+
+    private final Map<String, MqttPayloadCodec> codecs = new HashMap<>();
+
+    private final List<String[]> rules = new ArrayList<>();
+
+    private final List<String> compressFilters = new ArrayList<>();
+
+    private MqttPayloadCodec defaultCodec;
+
+    private final AtomicLong compressed = new AtomicLong();
+
+    private final AtomicLong bytesBeforeCompress = new AtomicLong();
+
+    private final AtomicLong bytesAfterCompress = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        register(new JsonPayloadCodec());
+        register(new JsonbPayloadCodec());
+
+        defaultCodec = codecOf(defaultCodecName);
+        for (String rule : topicCodecs) {
+            if (StringUtils.isBlank(rule)) {
+                continue;
+            }
+            String[] parts = rule.trim().split(RULE_SEPARATOR);
+            AssertUtil.isTrue(parts.length == 2);
+            codecOf(parts[1]);
+            rules.add(new String[]{parts[0], parts[1]});
+        }
+        for (String filter : compressTopics) {
+            if (StringUtils.isNotBlank(filter)) {
+                compressFilters.add(filter.trim());
+            }
+        }
+    }
+
+    /**
+     * 主题对应的编码
+     */
+    public MqttPayloadCodec codecFor(String topic) {
+        for (String[] rule : rules) {
+            if (MqttTopic.isMatched(rule[0], topic)) {
+                return codecs.get(rule[1]);
+            }
+        }
+        return defaultCodec;
+    }
+
+    /**
+     * 按主题编码，允许压缩的主题超过阈值时压缩
+     */
+    public byte[] encode(String topic, Object value) {
+        return encode(topic, codecFor(topic), value);
+    }
+
+    /**
+     * 使用指定编码，是否压缩仍由发送主题决定
+     */
+    public byte[] encode(String topic, MqttPayloadCodec codec, Object value) {
+        byte[] bytes = codec.encode(value);
+        if (compressThreshold <= 0 || bytes.length <= compressThreshold || !compressible(topic)) {
+            return bytes;
+        }
+        byte[] gzipped = gzip(bytes);
+        compressed.incrementAndGet();
+        bytesBeforeCompress.addAndGet(bytes.length);
+        bytesAfterCompress.addAndGet(gzipped.length);
+        return gzipped;
+    }
+
+    /**
+     * 按主题解码，gzip压缩的消息先解压
+     */
+    public <T> T decode(String topic, byte[] bytes, Class<T> clazz) {
+        return decode(codecFor(topic), bytes, clazz);
+    }
+
+    public <T> T decode(MqttPayloadCodec codec, byte[] bytes, Class<T> clazz) {
+        if (isGzip(bytes)) {
+            byte[] plain = gunzip(bytes, maxDecompressedBytes);
+            return codec.decode(plain, 0, plain.length, clazz);
+        }
+        return codec.decode(bytes, 0, bytes.length, clazz);
+    }
+
+    public long getCompressed() {
+        return compressed.get();
+    }
+
+    public long getBytesBeforeCompress() {
+        return bytesBeforeCompress.get();
+    }
+
+    public long getBytesAfterCompress() {
+        return bytesAfterCompress.get();
+    }
+
+    private void register(MqttPayloadCodec codec) {
+        codecs.put(codec.name(), codec);
+    }
+
+    private MqttPayloadCodec codecOf(String name) {
+        MqttPayloadCodec codec = codecs.get(name);
+        if (codec == null) {
+            LogUtil.error(logger, "unknown mqtt codec,name=" + name);
+            throw new ManagerBizException(ResultEnum.PARAMETER_ILLEGAL);
+        }
+        return codec;
+    }
+
+    private boolean compressible(String topic) {
+        for (String filter : compressFilters) {
+            if (MqttTopic.isMatched(filter, topic)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isGzip(byte[] bytes) {
+        return bytes.length > 2 && (bytes[0] & 0xff) == GZIP_MAGIC_0 && (bytes[1] & 0xff) == GZIP_MAGIC_1;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                // 压缩在发送路径上，优先速度
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        }) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new ManagerBizException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes, int maxBytes) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(bytes.length * 4L, maxBytes));
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                if (out.size() + n > maxBytes) {
+                    LogUtil.warn(logger, "mqtt payload decompressed size exceeds limit,max=" + maxBytes);
+                    throw new ManagerBizException(ResultEnum.PARAMETER_ILLEGAL);
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new ManagerBizException(ResultEnum.PARAMETER_ILLEGAL);
+        }
+    }
+}
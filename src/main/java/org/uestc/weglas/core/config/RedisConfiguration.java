@@ -0,0 +1,29 @@
+package org.uestc.weglas.core.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * redis配置
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Configuration
+public class RedisConfiguration {
+
+    /**
+     * key为字符串，value为调用方自行序列化好的字节，不使用jdk序列化
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> binaryRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(redisConnectionFactory);
+        template.setEnableDefaultSerializer(false);
+        template.setKeySerializer(RedisSerializer.string());
+        return template;
+    }
+}
@@ -0,0 +1,47 @@
+package org.uestc.weglas.core.config;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 响应式链路使用的调度器
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Configuration
+public class SchedulerConfiguration {
+
+    /**
+     * db线程数，不宜超过数据库连接池大小
+     */
+    @Value("${spring.ai.db-scheduler.pool-size:20}")
+    private int dbPoolSize;
+
+    /**
+     * db任务排队上限，超出后直接失败，避免慢库时任务无限堆积
+     */
+    @Value("${spring.ai.db-scheduler.queue-capacity:1000}")
+    private int dbQueueCapacity;
+
+    /**
+     * 流式链路中的阻塞db操作统一切换到该调度器，避免占用netty事件循环线程
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler dbScheduler() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(dbPoolSize, dbPoolSize,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(dbQueueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("db-scheduler-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return Schedulers.fromExecutorService(executor);
+    }
+}
@@ -0,0 +1,24 @@
+package org.uestc.weglas.core.context;
+
+import org.uestc.weglas.core.model.Conversation;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+
+import java.util.List;
+
+/**
+ * 组装发送给模型的历史上下文
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public interface ChatContextAssembler {
+
+    /**
+     * 按模型的token预算裁剪历史聊天
+     *
+     * @param conversation 会话，chatList为已加载的历史聊天
+     * @param currentChat  当前用户输入
+     * @return 发送给模型的历史聊天，按时间正序
+     */
+    List<ConversationChatDetail> assemble(Conversation conversation, ConversationChatDetail currentChat);
+}
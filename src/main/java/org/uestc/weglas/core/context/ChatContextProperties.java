@@ -0,0 +1,77 @@
+package org.uestc.weglas.core.context;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 聊天上下文配置
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "spring.ai.context")
+public class ChatContextProperties {
+
+    /**
+     * 未单独配置的模型使用的历史token预算
+     */
+    private int defaultTokenBudget = 2048;
+
+    /**
+     * 按模型配置的历史token预算，key为llmModel
+     */
+    private Map<String, Integer> modelTokenBudgets = new HashMap<>();
+
+    /**
+     * 超出预算的早期聊天是否用摘要替代
+     */
+    private boolean summaryEnabled = false;
+
+    /**
+     * 摘要的token预算，计入历史token预算
+     */
+    private int summaryTokenBudget = 256;
+
+    /**
+     * 单次最多补进摘要的早期聊天条数，指已移出db加载窗口、尚未摘要的部分，更早的由召回覆盖
+     */
+    private int summaryCatchUpSize = 200;
+
+    /**
+     * 摘要缓存的会话数
+     */
+    private int summaryCacheSize = 1000;
+
+    /**
+     * 是否召回窗口之外与当前输入相关的早期聊天
+     */
+    private boolean memoryEnabled = false;
+
+    /**
+     * 最多召回的早期聊天数
+     */
+    private int memoryTopK = 4;
+
+    /**
+     * 召回聊天的token预算上限，只扣除实际召回占用的部分，没用完的留给最近的聊天
+     */
+    private int memoryTokenBudget = 512;
+
+    /**
+     * 召回的最低相似度
+     */
+    private float memoryMinScore = 0.2f;
+
+    public int tokenBudget(String llmModel) {
+        if (llmModel == null) {
+            return defaultTokenBudget;
+        }
+        return modelTokenBudgets.getOrDefault(llmModel, defaultTokenBudget);
+    }
+}
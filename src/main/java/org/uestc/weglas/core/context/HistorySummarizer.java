@@ -0,0 +1,26 @@
+package org.uestc.weglas.core.context;
+
+import org.uestc.weglas.core.model.ConversationChatDetail;
+
+import java.util.List;
+
+/**
+ * 历史聊天摘要，用于替代超出token预算的早期聊天
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public interface HistorySummarizer {
+
+    /**
+     * 在已有摘要的基础上合并新移出窗口的聊天
+     *
+     * @param llmModel        模型名
+     * @param previousSummary 已有摘要，可为空
+     * @param droppedChats    新移出窗口的聊天，按时间正序
+     * @param tokenBudget     摘要的token预算
+     * @return 新的摘要
+     */
+    String summarize(String llmModel, String previousSummary, List<ConversationChatDetail> droppedChats,
+                     int tokenBudget);
+}
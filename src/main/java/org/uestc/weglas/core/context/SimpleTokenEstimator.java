@@ -0,0 +1,34 @@
+package org.uestc.weglas.core.context;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 按字符粗略估算：中日韩字符每字约1个token，其余字符约4个字符1个token
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class SimpleTokenEstimator implements TokenEstimator {
+
+    private static final int ASCII_CHARS_PER_TOKEN = 4;
+
+    @Override
+    public int estimate(String llmModel, String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int wideChars = 0;
+        int otherChars = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isIdeographic(codePoint)) {
+                wideChars++;
+            } else {
+                otherChars++;
+            }
+        }
+        return wideChars + (otherChars + ASCII_CHARS_PER_TOKEN - 1) / ASCII_CHARS_PER_TOKEN;
+    }
+}
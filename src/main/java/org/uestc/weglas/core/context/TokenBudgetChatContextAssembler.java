@@ -0,0 +1,328 @@
+package org.uestc.weglas.core.context;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.uestc.weglas.core.builder.ConversationChatBuilder;
+import org.uestc.weglas.core.memory.ChatMemory;
+import org.uestc.weglas.core.model.Conversation;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+import org.uestc.weglas.core.service.ConversationService;
+import org.uestc.weglas.util.log.LogUtil;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按token预算从最新一条往前保留历史，超出部分可用滚动摘要替代，
+ * 窗口之外与当前输入相关的早期聊天可按相似度召回
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class TokenBudgetChatContextAssembler implements ChatContextAssembler {
+
+    private static final Logger logger = LogManager.getLogger(TokenBudgetChatContextAssembler.class);
+
+    /**
+     * 每条消息的角色、分隔符等格式开销
+     */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private static final String MEMORY_PREFIX = "以下是本会话中与当前问题相关的早期对话：";
+
+    @Autowired
+    private ChatContextProperties properties;
+
+    @Autowired
+    private TokenEstimator tokenEstimator;
+
+    @Autowired
+    private HistorySummarizer historySummarizer;
+
+    @Autowired
+    private ChatMemory chatMemory;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    /**
+     * 会话id -> 滚动摘要
+     */
+    private Cache<Integer, RollingSummary> summaryCache;
+
+    @PostConstruct
+    public void init() {
+        summaryCache = CacheBuilder.newBuilder()
+                .maximumSize(properties.getSummaryCacheSize())
+                .expireAfterAccess(1, TimeUnit.HOURS)
+                .build();
+    }
+
+    @Override
+    public List<ConversationChatDetail> assemble(Conversation conversation, ConversationChatDetail currentChat) {
+        List<ConversationChatDetail> history = conversation.getChatList();
+        if (CollectionUtils.isEmpty(history)) {
+            return Collections.emptyList();
+        }
+
+        String llmModel = conversation.getLlmModel();
+        int budget = properties.tokenBudget(llmModel) - estimate(llmModel, currentChat);
+        if (properties.isSummaryEnabled()) {
+            budget -= properties.getSummaryTokenBudget();
+        }
+        boolean recallEnabled = properties.isMemoryEnabled() && conversation.getId() != null;
+        int memoryReserve = recallEnabled ? properties.getMemoryTokenBudget() : 0;
+
+        // 先为召回预留预算，从最新一条往前累加，直到超出预算
+        int used = 0;
+        int start = history.size();
+        while (start > 0) {
+            int tokens = estimate(llmModel, history.get(start - 1));
+            if (used + tokens > budget - memoryReserve) {
+                break;
+            }
+            used += tokens;
+            start--;
+        }
+
+        // 窗口之外的早期聊天，包括未加载进历史的部分
+        List<ConversationChatDetail> recalled = Collections.emptyList();
+        int memoryTokens = 0;
+        if (recallEnabled) {
+            Integer beforeChatId = start == history.size() ? afterLast(history) : history.get(start).getId();
+            recalled = recall(conversation, currentChat, beforeChatId);
+            memoryTokens = memoryTokens(llmModel, recalled);
+        }
+
+        // 召回没有用完的预算还给更早的聊天
+        while (start > 0) {
+            int tokens = estimate(llmModel, history.get(start - 1));
+            if (used + tokens > budget - memoryTokens) {
+                break;
+            }
+            used += tokens;
+            start--;
+        }
+        List<ConversationChatDetail> kept = history.subList(start, history.size());
+        ConversationChatDetail memory = buildMemory(conversation, outsideWindow(recalled, kept));
+        // 历史全部保留时，更早移出db加载窗口的聊天同样需要摘要
+        String summary = properties.isSummaryEnabled() && conversation.getId() != null
+                ? rollingSummary(conversation, history, start) : null;
+        if (start == 0 && memory == null && StringUtils.isBlank(summary)) {
+            return history;
+        }
+
+        LogUtil.debug(logger, "context assembled,conversationId=" + conversation.getId()
+                + ",dropped=" + start + ",kept=" + kept.size() + ",tokens=" + used
+                + ",memory=" + (memory != null));
+
+        List<ConversationChatDetail> context = new ArrayList<>(kept.size() + 2);
+        if (StringUtils.isNotBlank(summary)) {
+            context.add(ConversationChatBuilder.buildSystemChat(conversation, summary));
+        }
+        if (memory != null) {
+            context.add(memory);
+        }
+        context.addAll(kept);
+        return context;
+    }
+
+    /**
+     * 窗口为空时的召回边界：已加载历史之后的聊天都不召回。
+     * 当前聊天在WRITE_BEHIND模式下可能还没有id，不能作为边界
+     */
+    private static Integer afterLast(List<ConversationChatDetail> history) {
+        Integer lastChatId = history.get(history.size() - 1).getId();
+        return lastChatId == null ? null : lastChatId + 1;
+    }
+
+    /**
+     * 按相似度取召回的聊天直到用完召回预算，按时间顺序返回
+     */
+    private List<ConversationChatDetail> recall(Conversation conversation, ConversationChatDetail currentChat,
+                                                Integer beforeChatId) {
+        String llmModel = conversation.getLlmModel();
+        List<ConversationChatDetail> recalled = chatMemory.recall(conversation.getId(), currentChat.getContent(),
+                beforeChatId, properties.getMemoryTopK(), properties.getMemoryMinScore());
+
+        int used = tokenEstimator.estimate(llmModel, MEMORY_PREFIX) + MESSAGE_OVERHEAD_TOKENS;
+        List<ConversationChatDetail> selected = new ArrayList<>(recalled.size());
+        for (ConversationChatDetail chat : recalled) {
+            int tokens = estimate(llmModel, chat);
+            if (used + tokens > properties.getMemoryTokenBudget()) {
+                continue;
+            }
+            used += tokens;
+            selected.add(chat);
+        }
+        selected.sort(Comparator.comparing(ConversationChatDetail::getId));
+        return selected;
+    }
+
+    /**
+     * 召回消息实际占用的token数，没有召回时为0
+     */
+    private int memoryTokens(String llmModel, List<ConversationChatDetail> recalled) {
+        if (recalled.isEmpty()) {
+            return 0;
+        }
+        int tokens = tokenEstimator.estimate(llmModel, MEMORY_PREFIX) + MESSAGE_OVERHEAD_TOKENS;
+        for (ConversationChatDetail chat : recalled) {
+            tokens += estimate(llmModel, chat);
+        }
+        return tokens;
+    }
+
+    /**
+     * 窗口向前扩展后，去掉已在窗口中的召回聊天
+     */
+    private static List<ConversationChatDetail> outsideWindow(List<ConversationChatDetail> recalled,
+                                                              List<ConversationChatDetail> kept) {
+        Integer firstChatId = kept.isEmpty() ? null : kept.get(0).getId();
+        if (recalled.isEmpty() || firstChatId == null) {
+            return recalled;
+        }
+        List<ConversationChatDetail> outside = new ArrayList<>(recalled.size());
+        for (ConversationChatDetail chat : recalled) {
+            if (chat.getId() < firstChatId) {
+                outside.add(chat);
+            }
+        }
+        return outside;
+    }
+
+    /**
+     * 召回的聊天合并成一条system消息，没有召回时为 {@code null}
+     */
+    private ConversationChatDetail buildMemory(Conversation conversation, List<ConversationChatDetail> selected) {
+        if (selected.isEmpty()) {
+            return null;
+        }
+        StringBuilder content = new StringBuilder(MEMORY_PREFIX);
+        for (ConversationChatDetail chat : selected) {
+            content.append('\n').append('[').append(chat.getRole()).append("] ").append(chat.getContent());
+        }
+        return ConversationChatBuilder.buildSystemChat(conversation, content.toString());
+    }
+
+    /**
+     * 摘要覆盖窗口之前的全部聊天，只把上次覆盖位置之后新移出窗口的聊天合并进摘要。
+     * 已移出db加载窗口、没有加载进历史的部分按游标从db补齐，单次最多补齐离窗口最近的
+     * summaryCatchUpSize条，更早的不再摘要，由召回覆盖
+     *
+     * @param start 窗口在历史中的开始位置，之前的聊天被移出窗口
+     */
+    private String rollingSummary(Conversation conversation, List<ConversationChatDetail> history, int start) {
+        RollingSummary previous = summaryCache.getIfPresent(conversation.getId());
+        ConversationChatDetail first = history.get(0);
+        if (!hasCursor(first)) {
+            return previous == null ? null : previous.summary;
+        }
+
+        RollingSummary covered = coveredUntil(history, start);
+        if (covered == null || (previous != null && !covered.isAfter(previous))) {
+            // 窗口没有向后移动
+            return previous == null ? null : previous.summary;
+        }
+
+        List<ConversationChatDetail> uncovered = new ArrayList<>();
+        if (previous == null) {
+            uncovered.addAll(conversationService.queryChatsBefore(first, null, null,
+                    properties.getSummaryCatchUpSize()));
+        } else if (!previous.covers(first)) {
+            uncovered.addAll(conversationService.queryChatsBefore(first, previous.gmtCreate, previous.chatId,
+                    properties.getSummaryCatchUpSize()));
+        }
+        for (ConversationChatDetail chat : history.subList(0, start)) {
+            // id为空的聊天无法确定位置，不计入摘要
+            if (hasCursor(chat) && (previous == null || !previous.covers(chat))) {
+                uncovered.add(chat);
+            }
+        }
+
+        String summary = previous == null ? null : previous.summary;
+        if (!uncovered.isEmpty()) {
+            summary = historySummarizer.summarize(conversation.getLlmModel(), summary, uncovered,
+                    properties.getSummaryTokenBudget());
+        }
+        // 没有新聊天时同样记录覆盖位置，避免重复查询db
+        summaryCache.put(conversation.getId(), covered.withSummary(summary));
+        return summary;
+    }
+
+    /**
+     * 本次摘要应覆盖到的位置，即窗口开始之前，无法确定时为 {@code null}
+     */
+    private static RollingSummary coveredUntil(List<ConversationChatDetail> history, int start) {
+        if (start == history.size()) {
+            return RollingSummary.after(history.get(start - 1));
+        }
+        return hasCursor(history.get(start)) ? RollingSummary.before(history.get(start)) : null;
+    }
+
+    private static boolean hasCursor(ConversationChatDetail chat) {
+        return chat.getId() != null && chat.getGmtCreate() != null;
+    }
+
+    private int estimate(String llmModel, ConversationChatDetail chat) {
+        return tokenEstimator.estimate(llmModel, chat.getContent()) + MESSAGE_OVERHEAD_TOKENS;
+    }
+
+    /**
+     * 滚动摘要，覆盖 (gmt_create, id) 游标之前的全部聊天
+     */
+    private static class RollingSummary {
+
+        private final Date gmtCreate;
+
+        private final int chatId;
+
+        private final String summary;
+
+        RollingSummary(Date gmtCreate, int chatId, String summary) {
+            this.gmtCreate = gmtCreate;
+            this.chatId = chatId;
+            this.summary = summary;
+        }
+
+        /**
+         * 覆盖到该聊天之前，不含该聊天
+         */
+        static RollingSummary before(ConversationChatDetail chat) {
+            return new RollingSummary(chat.getGmtCreate(), chat.getId(), null);
+        }
+
+        /**
+         * 覆盖到该聊天为止，含该聊天，无法确定位置时为 {@code null}
+         */
+        static RollingSummary after(ConversationChatDetail chat) {
+            return hasCursor(chat) ? new RollingSummary(chat.getGmtCreate(), chat.getId() + 1, null) : null;
+        }
+
+        RollingSummary withSummary(String summary) {
+            return new RollingSummary(gmtCreate, chatId, summary);
+        }
+
+        boolean covers(ConversationChatDetail chat) {
+            int compare = chat.getGmtCreate().compareTo(gmtCreate);
+            return compare < 0 || (compare == 0 && chat.getId() < chatId);
+        }
+
+        boolean isAfter(RollingSummary other) {
+            int compare = gmtCreate.compareTo(other.gmtCreate);
+            return compare > 0 || (compare == 0 && chatId > other.chatId);
+        }
+    }
+}
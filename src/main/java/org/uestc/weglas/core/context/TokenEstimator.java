@@ -0,0 +1,19 @@
+package org.uestc.weglas.core.context;
+
+/**
+ * token数估算，用于在不依赖具体模型分词器的情况下控制上下文大小
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public interface TokenEstimator {
+
+    /**
+     * 估算文本的token数
+     *
+     * @param llmModel 模型名，可为空
+     * @param text     文本
+     * @return token数
+     */
+    int estimate(String llmModel, String text);
+}
@@ -0,0 +1,45 @@
+package org.uestc.weglas.core.context;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+
+import java.util.List;
+
+/**
+ * 默认摘要实现：不调用模型，按"角色: 内容"拼接后保留最近的部分
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class TruncatingHistorySummarizer implements HistorySummarizer {
+
+    @Autowired
+    private TokenEstimator tokenEstimator;
+
+    @Override
+    public String summarize(String llmModel, String previousSummary, List<ConversationChatDetail> droppedChats,
+                            int tokenBudget) {
+        StringBuilder summary = new StringBuilder();
+        if (StringUtils.isNotBlank(previousSummary)) {
+            summary.append(previousSummary);
+        }
+        for (ConversationChatDetail chat : droppedChats) {
+            if (summary.length() > 0) {
+                summary.append('\n');
+            }
+            summary.append(chat.getRole()).append(": ").append(StringUtils.defaultString(chat.getContent()));
+        }
+
+        // 超出预算时从头部截断，保留最近的内容
+        String text = summary.toString();
+        int tokens = tokenEstimator.estimate(llmModel, text);
+        if (tokens <= tokenBudget) {
+            return text;
+        }
+        int keepChars = (int) ((long) text.length() * tokenBudget / tokens);
+        return text.substring(text.length() - keepChars);
+    }
+}
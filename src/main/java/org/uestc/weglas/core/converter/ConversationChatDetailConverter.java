@@ -1,13 +1,10 @@
 package org.uestc.weglas.core.converter;
 
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.TypeReference;
 import org.uestc.weglas.base.entity.ConversationChatDetailEntity;
 import org.uestc.weglas.core.model.ConversationChatDetail;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @author yingxian.cyx
@@ -18,7 +15,7 @@ public class ConversationChatDetailConverter {
 
     public static List<ConversationChatDetail> convert(List<ConversationChatDetailEntity> chatList) {
 
-        List<ConversationChatDetail> chats = new ArrayList<>();
+        List<ConversationChatDetail> chats = new ArrayList<>(chatList.size());
         for (ConversationChatDetailEntity chat : chatList) {
             chats.add(convert(chat));
         }
@@ -33,8 +30,7 @@ public class ConversationChatDetailConverter {
         chat.setRole(entity.getRole());
         chat.setContent(entity.getContent());
 
-        chat.setExt(JSON.parseObject(entity.getExt(), new TypeReference<Map<String, String>>() {
-        }));
+        chat.setExt(ExtConverter.lazy(entity.getExt()));
         chat.setGmtCreate(entity.getGmtCreate());
         chat.setGmtModified(entity.getGmtModified());
         return chat;
@@ -48,7 +44,8 @@ public class ConversationChatDetailConverter {
         entity.setRole(chat.getRole());
         entity.setContent(chat.getContent());
 
-        entity.setExt(JSON.toJSONString(chat.getExt()));
+        entity.setExt(ExtConverter.toJson(chat.getExt()));
+        entity.setExtUnchanged(ExtConverter.isUnchanged(chat.getExt()));
         entity.setGmtCreate(chat.getGmtCreate());
         entity.setGmtModified(chat.getGmtModified());
         return entity;
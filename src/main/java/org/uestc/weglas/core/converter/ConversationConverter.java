@@ -1,7 +1,5 @@
 package org.uestc.weglas.core.converter;
 
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.TypeReference;
 import org.springframework.util.CollectionUtils;
 import org.uestc.weglas.base.entity.ConversationEntity;
 import org.uestc.weglas.core.model.Conversation;
@@ -9,7 +7,6 @@ import org.uestc.weglas.core.model.Conversation;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @author yingxian.cyx
@@ -36,8 +33,8 @@ public class ConversationConverter {
         conversation.setId(conversationEntity.getId());
         conversation.setTitle(conversationEntity.getTitle());
         conversation.setLlmModel(conversationEntity.getLlmModel());
-        conversation.setExt(JSON.parseObject(conversationEntity.getExt(), new TypeReference<Map<String, String>>() {
-        }));
+        conversation.setDeviceId(conversationEntity.getDeviceId());
+        conversation.setExt(ExtConverter.lazy(conversationEntity.getExt()));
         conversation.setGmtCreate(conversationEntity.getGmtCreate());
         conversation.setGmtModified(conversationEntity.getGmtModified());
         return conversation;
@@ -48,7 +45,9 @@ public class ConversationConverter {
         entity.setId(conversation.getId());
         entity.setTitle(conversation.getTitle());
         entity.setLlmModel(conversation.getLlmModel());
-        entity.setExt(JSON.toJSONString(conversation.getExt()));
+        entity.setDeviceId(conversation.getDeviceId());
+        entity.setExt(ExtConverter.toJson(conversation.getExt()));
+        entity.setExtUnchanged(ExtConverter.isUnchanged(conversation.getExt()));
         entity.setGmtCreate(conversation.getGmtCreate());
         entity.setGmtModified(conversation.getGmtModified());
         return entity;
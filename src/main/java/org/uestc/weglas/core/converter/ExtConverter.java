@@ -0,0 +1,61 @@
+package org.uestc.weglas.core.converter;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.TypeReference;
+import org.uestc.weglas.core.model.LazyExt;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ext字段与json的转换
+ * 读出时包装为 {@link LazyExt}，用到时才解析；写入时未修改的直接写回原始json，空的写null而不是 "null"/"{}"。
+ * 类型只解析一次：匿名TypeReference每次创建都要反射取泛型参数，逐行转换时开销明显。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class ExtConverter {
+
+    private static final Type EXT_TYPE = new TypeReference<Map<String, String>>() {
+    }.getType();
+
+    public static Map<String, String> parse(String ext) {
+        return JSON.parseObject(ext, EXT_TYPE);
+    }
+
+    /**
+     * db中的ext转为延迟解析的map，不会返回 {@code null}
+     */
+    public static LazyExt lazy(String ext) {
+        return LazyExt.of(ext);
+    }
+
+    /**
+     * 写入db的ext，为空时返回 {@code null}
+     */
+    public static String toJson(Map<String, String> ext) {
+        if (ext instanceof LazyExt) {
+            return ((LazyExt) ext).toJson();
+        }
+        return ext == null || ext.isEmpty() ? null : JSON.toJSONString(ext);
+    }
+
+    /**
+     * 是否为读出后未修改的ext
+     */
+    public static boolean isUnchanged(Map<String, String> ext) {
+        return ext instanceof LazyExt && !((LazyExt) ext).isModified();
+    }
+
+    /**
+     * 复制ext，未解析的只复制原始json
+     */
+    public static Map<String, String> copy(Map<String, String> ext) {
+        if (ext instanceof LazyExt) {
+            return ((LazyExt) ext).copy();
+        }
+        return ext == null ? null : new HashMap<>(ext);
+    }
+}
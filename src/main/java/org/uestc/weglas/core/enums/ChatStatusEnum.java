@@ -0,0 +1,31 @@
+package org.uestc.weglas.core.enums;
+
+/**
+ * 助手聊天的生成状态，保存在聊天ext中
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public enum ChatStatusEnum {
+
+    COMPLETED("COMPLETED", "生成完成"),
+    ABORTED("ABORTED", "客户端断开，生成中止"),
+    FAILED("FAILED", "生成失败"),
+    ;
+
+    private String code;
+    private String message;
+
+    ChatStatusEnum(String code, String message) {
+        this.code = code;
+        this.message = message;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
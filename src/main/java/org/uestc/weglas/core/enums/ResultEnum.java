@@ -10,6 +10,9 @@ public enum ResultEnum {
     PARAMETER_ILLEGAL("PARAMETER_ILLEGAL", "参数校验失败"),
     INVOKE_FAIL("INVOKE_FAIL", "接口调用失败"),
     SYSTEM_EXCEPTION("SYSTEM_EXCEPTION", "系统异常"),
+    SYSTEM_BUSY("SYSTEM_BUSY", "系统繁忙，请稍后重试"),
+    INVOKE_TIMEOUT("INVOKE_TIMEOUT", "接口调用超时"),
+    RATE_LIMITED("RATE_LIMITED", "请求过于频繁，请稍后重试"),
     ;
 
     private String code;
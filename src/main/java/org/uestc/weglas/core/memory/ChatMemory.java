@@ -0,0 +1,248 @@
+package org.uestc.weglas.core.memory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.base.entity.ConversationChatDetailEntity;
+import org.uestc.weglas.base.mapper.ConversationChatDetailMapper;
+import org.uestc.weglas.core.converter.ConversationChatDetailConverter;
+import org.uestc.weglas.core.model.ConversationChatDetail;
+import org.uestc.weglas.util.log.LogUtil;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 会话语义记忆
+ * 聊天落库后向量化写入堆外索引，组装上下文时按当前输入召回窗口之外最相关的早期聊天。
+ * 索引只在内存中：重启后会话第一次召回时从db加载最近的聊天补齐；向量被覆盖的会话重新标记为未补齐，下次召回时再补齐。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class ChatMemory {
+
+    private static final Logger logger = LogManager.getLogger(ChatMemory.class);
+
+    private static final String ROLE_SYSTEM = "system";
+
+    @Value("${spring.ai.memory.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 最多保存的向量数，写满后覆盖最早的
+     */
+    @Value("${spring.ai.memory.max-vectors:100000}")
+    private int maxVectors;
+
+    /**
+     * 会话第一次召回时从db补齐的最近聊天数
+     */
+    @Value("${spring.ai.memory.backfill-limit:1000}")
+    private int backfillLimit;
+
+    /**
+     * 记录已补齐的会话数
+     */
+    @Value("${spring.ai.memory.loaded-conversations:100000}")
+    private int loadedConversationsSize;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private ConversationChatDetailMapper conversationChatDetailMapper;
+
+    private OffHeapVectorIndex index;
+
+    /**
+     * 已从db补齐的会话，并发召回同一会话时只补齐一次
+     */
+    private Cache<Integer, Boolean> loadedConversations;
+
+    private final AtomicLong embedded = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong recalls = new AtomicLong();
+
+    private final AtomicLong recalled = new AtomicLong();
+
+    private final AtomicLong backfills = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        index = new OffHeapVectorIndex(embeddingService.dimension(), maxVectors);
+        loadedConversations = CacheBuilder.newBuilder()
+                .maximumSize(loadedConversationsSize)
+                .build();
+    }
+
+    /**
+     * 写入已落库的聊天，id为空、内容为空和system聊天跳过
+     */
+    public void add(List<ConversationChatDetailEntity> entities) {
+        if (!enabled) {
+            return;
+        }
+        for (ConversationChatDetailEntity entity : entities) {
+            if (entity.getId() == null || entity.getConversationId() == null
+                    || StringUtils.isBlank(entity.getContent()) || ROLE_SYSTEM.equals(entity.getRole())) {
+                continue;
+            }
+            try {
+                int evicted = index.add(entity.getConversationId(), entity.getId(),
+                        embeddingService.embed(entity.getContent()));
+                embedded.incrementAndGet();
+                // 覆盖的是本会话自己最早的向量时不需要重新补齐
+                if (evicted != 0 && evicted != entity.getConversationId()) {
+                    loadedConversations.invalidate(evicted);
+                    evictions.incrementAndGet();
+                }
+            } catch (RuntimeException e) {
+                // 向量化失败不影响聊天写入，只是少了一条可召回的记忆
+                failed.incrementAndGet();
+                LogUtil.warn(logger, e, "chat memory add failed,chatId=" + entity.getId());
+            }
+        }
+    }
+
+    public void delete(Integer chatId) {
+        if (enabled) {
+            index.delete(chatId);
+        }
+    }
+
+    public void deleteByConversation(Integer conversationId) {
+        if (enabled) {
+            index.deleteByConversation(conversationId);
+            loadedConversations.invalidate(conversationId);
+        }
+    }
+
+    /**
+     * 召回会话中与输入最相关的早期聊天
+     *
+     * @param conversationId 会话id
+     * @param text           当前输入
+     * @param beforeChatId   只召回id小于该值的聊天，即已在上下文窗口中的聊天之前的部分，为空时不限制
+     * @param topK           最多召回条数
+     * @param minScore       最低相似度
+     * @return 按相似度降序
+     */
+    public List<ConversationChatDetail> recall(Integer conversationId, String text, Integer beforeChatId, int topK,
+                                               float minScore) {
+        if (!enabled || conversationId == null || StringUtils.isBlank(text) || topK <= 0) {
+            return Collections.emptyList();
+        }
+        recalls.incrementAndGet();
+        ensureLoaded(conversationId);
+
+        List<OffHeapVectorIndex.Neighbor> neighbors = index.search(conversationId, embeddingService.embed(text),
+                topK, beforeChatId, minScore);
+        if (neighbors.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Integer> chatIds = new ArrayList<>(neighbors.size());
+        for (OffHeapVectorIndex.Neighbor neighbor : neighbors) {
+            chatIds.add(neighbor.getChatId());
+        }
+        Map<Integer, ConversationChatDetail> chats = new HashMap<>();
+        for (ConversationChatDetail chat : ConversationChatDetailConverter.convert(
+                conversationChatDetailMapper.selectByIds(chatIds))) {
+            chats.put(chat.getId(), chat);
+        }
+
+        // 按相似度顺序返回，db中已删除的跳过
+        List<ConversationChatDetail> result = new ArrayList<>(chats.size());
+        for (Integer chatId : chatIds) {
+            ConversationChatDetail chat = chats.get(chatId);
+            if (chat != null) {
+                result.add(chat);
+            }
+        }
+        recalled.addAndGet(result.size());
+        return result;
+    }
+
+    public int getSize() {
+        return index.size();
+    }
+
+    public int getCapacity() {
+        return index.capacity();
+    }
+
+    public long getOffHeapBytes() {
+        return index.offHeapBytes();
+    }
+
+    public long getEmbedded() {
+        return embedded.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRecalls() {
+        return recalls.get();
+    }
+
+    /**
+     * 召回的聊天总数
+     */
+    public long getRecalled() {
+        return recalled.get();
+    }
+
+    public long getBackfills() {
+        return backfills.get();
+    }
+
+    /**
+     * 其他会话的向量被覆盖、需要重新补齐的次数
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private void ensureLoaded(Integer conversationId) {
+        try {
+            loadedConversations.get(conversationId, () -> {
+                backfill(conversationId);
+                return Boolean.TRUE;
+            });
+        } catch (ExecutionException e) {
+            // 补齐失败时用已有的向量召回，下次再补齐
+            LogUtil.warn(logger, e.getCause(), "chat memory backfill failed,conversationId=" + conversationId);
+        }
+    }
+
+    /**
+     * 加载最近的聊天写入索引，已有的按id覆盖
+     */
+    private void backfill(Integer conversationId) {
+        List<ConversationChatDetailEntity> entities = conversationChatDetailMapper.selectRecentByConversationId(
+                conversationId, null, null, backfillLimit);
+        add(entities);
+        backfills.incrementAndGet();
+        LogUtil.debug(logger, "chat memory backfilled,conversationId=" + conversationId
+                + ",chats=" + entities.size());
+    }
+}
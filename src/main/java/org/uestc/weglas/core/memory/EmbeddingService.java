@@ -0,0 +1,24 @@
+package org.uestc.weglas.core.memory;
+
+/**
+ * 文本向量化，用于按语义召回历史聊天
+ * 默认使用本地的 {@link HashingEmbeddingService}；接入向量模型时实现该接口并标记为 @Primary。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public interface EmbeddingService {
+
+    /**
+     * 向量维度，同一实例不变
+     */
+    int dimension();
+
+    /**
+     * 文本的向量
+     *
+     * @param text 文本
+     * @return 长度为 {@link #dimension()} 的单位向量，空文本为零向量
+     */
+    float[] embed(String text);
+}
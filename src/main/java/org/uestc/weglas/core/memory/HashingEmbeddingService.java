@@ -0,0 +1,104 @@
+package org.uestc.weglas.core.memory;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 特征哈希向量化：中文取单字和相邻两字，其余按连续的字母数字切词，哈希到固定维度后归一化。
+ * 不依赖模型，结果确定，离线可测；召回效果相当于按词面相似度，接入向量模型后替换。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class HashingEmbeddingService implements EmbeddingService {
+
+    private static final HashFunction HASH = Hashing.murmur3_32(0x5eed);
+
+    /**
+     * 两字组合的权重高于单字，更接近词的粒度
+     */
+    private static final float UNIGRAM_WEIGHT = 0.5f;
+
+    private static final float BIGRAM_WEIGHT = 1.0f;
+
+    private static final float WORD_WEIGHT = 1.0f;
+
+    @Value("${spring.ai.memory.dimension:256}")
+    private int dimension;
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimension];
+        if (text == null || text.isEmpty()) {
+            return vector;
+        }
+
+        int previousIdeograph = -1;
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (Character.isIdeographic(codePoint)) {
+                addWord(vector, word);
+                add(vector, String.valueOf(Character.toChars(codePoint)), UNIGRAM_WEIGHT);
+                if (previousIdeograph >= 0) {
+                    add(vector, new String(Character.toChars(previousIdeograph))
+                            + new String(Character.toChars(codePoint)), BIGRAM_WEIGHT);
+                }
+                previousIdeograph = codePoint;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                word.appendCodePoint(codePoint);
+                previousIdeograph = -1;
+            } else {
+                addWord(vector, word);
+                previousIdeograph = -1;
+            }
+        }
+        addWord(vector, word);
+        normalize(vector);
+        return vector;
+    }
+
+    private void addWord(float[] vector, StringBuilder word) {
+        if (word.length() == 0) {
+            return;
+        }
+        add(vector, word.toString().toLowerCase(Locale.ROOT), WORD_WEIGHT);
+        word.setLength(0);
+    }
+
+    /**
+     * 哈希值的低位选维度，最高位选符号，减少冲突带来的偏差
+     */
+    private void add(float[] vector, String feature, float weight) {
+        int hash = HASH.hashString(feature, StandardCharsets.UTF_8).asInt();
+        int index = (hash & Integer.MAX_VALUE) % dimension;
+        vector[index] += hash < 0 ? -weight : weight;
+    }
+
+    private static void normalize(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        if (sum == 0) {
+            return;
+        }
+        float scale = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package org.uestc.weglas.core.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 堆外向量索引
+ * 向量按槽位连续存放在direct buffer中，不占用堆也不参与gc；按块分配，用到时才申请。
+ * 槽位写满后循环覆盖最早写入的向量，总内存固定为 容量 * 维度 * 4字节。
+ * 召回只在一个会话的向量中精确计算内积取top-k：单个会话的聊天数有限，精确扫描比近似图索引更快也更准。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class OffHeapVectorIndex {
+
+    /**
+     * 每块的向量数
+     */
+    private static final int CHUNK_VECTORS = 4096;
+
+    private static final int EMPTY = 0;
+
+    private final int dimension;
+
+    private final int capacity;
+
+    private final List<FloatBuffer> chunks = new ArrayList<>();
+
+    /**
+     * 槽位 -> 聊天id、会话id，空槽位为 {@link #EMPTY}
+     */
+    private final int[] slotChatIds;
+
+    private final int[] slotConversationIds;
+
+    private final Map<Integer, Integer> slotByChatId = new HashMap<>();
+
+    private final Map<Integer, SlotList> slotsByConversation = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 下一个写入的槽位
+     */
+    private int next;
+
+    private int size;
+
+    public OffHeapVectorIndex(int dimension, int capacity) {
+        this.dimension = dimension;
+        this.capacity = capacity;
+        this.slotChatIds = new int[capacity];
+        this.slotConversationIds = new int[capacity];
+    }
+
+    /**
+     * 写入向量，同一聊天已存在时原位覆盖
+     *
+     * @return 槽位写满时被覆盖的向量所属的会话id，没有覆盖时为 {@code 0}
+     */
+    public int add(int conversationId, int chatId, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("vector dimension " + vector.length + " != " + dimension);
+        }
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotByChatId.get(chatId);
+            int evictedConversationId = EMPTY;
+            int slot;
+            if (existing != null) {
+                slot = existing;
+            } else {
+                slot = allocate();
+                evictedConversationId = slotConversationIds[slot];
+                if (evictedConversationId != EMPTY) {
+                    free(slot);
+                }
+            }
+            if (existing == null) {
+                slotChatIds[slot] = chatId;
+                slotConversationIds[slot] = conversationId;
+                slotByChatId.put(chatId, slot);
+                slotsByConversation.computeIfAbsent(conversationId, id -> new SlotList()).add(slot);
+                size++;
+            }
+            FloatBuffer chunk = chunks.get(slot / CHUNK_VECTORS);
+            int base = (slot % CHUNK_VECTORS) * dimension;
+            for (int i = 0; i < dimension; i++) {
+                chunk.put(base + i, vector[i]);
+            }
+            return evictedConversationId;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(int chatId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByChatId.get(chatId);
+            if (slot != null) {
+                free(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteByConversation(int conversationId) {
+        lock.writeLock().lock();
+        try {
+            SlotList slots = slotsByConversation.get(conversationId);
+            while (slots != null && slots.size > 0) {
+                free(slots.slots[slots.size - 1]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 在一个会话中按内积召回，向量为单位向量时即余弦相似度
+     *
+     * @param conversationId 会话id
+     * @param query          查询向量
+     * @param k              返回条数
+     * @param beforeChatId   只召回id小于该值的聊天，为空时不限制
+     * @param minScore       最低相似度
+     * @return 按相似度降序
+     */
+    public List<Neighbor> search(int conversationId, float[] query, int k, Integer beforeChatId, float minScore) {
+        PriorityQueue<Neighbor> top = new PriorityQueue<>(k + 1);
+        lock.readLock().lock();
+        try {
+            SlotList slots = slotsByConversation.get(conversationId);
+            if (slots == null) {
+                return new ArrayList<>();
+            }
+            for (int i = 0; i < slots.size; i++) {
+                int slot = slots.slots[i];
+                int chatId = slotChatIds[slot];
+                if (beforeChatId != null && chatId >= beforeChatId) {
+                    continue;
+                }
+                float score = dot(slot, query);
+                if (score < minScore) {
+                    continue;
+                }
+                if (top.size() < k) {
+                    top.offer(new Neighbor(chatId, score));
+                } else if (score > top.peek().score) {
+                    top.poll();
+                    top.offer(new Neighbor(chatId, score));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Neighbor> result = new ArrayList<>(top);
+        result.sort((a, b) -> Float.compare(b.score, a.score));
+        return result;
+    }
+
+    public boolean contains(int conversationId) {
+        lock.readLock().lock();
+        try {
+            return slotsByConversation.containsKey(conversationId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 已申请的堆外内存字节数
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            long floats = 0;
+            for (FloatBuffer chunk : chunks) {
+                floats += chunk.capacity();
+            }
+            return floats * Float.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 四路累加，连续读取同一块内存，便于jit展开
+     */
+    private float dot(int slot, float[] query) {
+        FloatBuffer chunk = chunks.get(slot / CHUNK_VECTORS);
+        int base = (slot % CHUNK_VECTORS) * dimension;
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            s0 += chunk.get(base + i) * query[i];
+            s1 += chunk.get(base + i + 1) * query[i + 1];
+            s2 += chunk.get(base + i + 2) * query[i + 2];
+            s3 += chunk.get(base + i + 3) * query[i + 3];
+        }
+        for (; i < dimension; i++) {
+            s0 += chunk.get(base + i) * query[i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    /**
+     * 取下一个槽位，写满后为最早写入的向量所在槽位，由调用方释放
+     */
+    private int allocate() {
+        int slot = next;
+        next = (next + 1) % capacity;
+        if (slot / CHUNK_VECTORS >= chunks.size()) {
+            int vectors = Math.min(CHUNK_VECTORS, capacity - slot);
+            chunks.add(ByteBuffer.allocateDirect(vectors * dimension * Float.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer());
+        }
+        return slot;
+    }
+
+    private void free(int slot) {
+        int conversationId = slotConversationIds[slot];
+        SlotList slots = slotsByConversation.get(conversationId);
+        if (slots != null) {
+            slots.remove(slot);
+            if (slots.size == 0) {
+                slotsByConversation.remove(conversationId);
+            }
+        }
+        slotByChatId.remove(slotChatIds[slot]);
+        slotChatIds[slot] = EMPTY;
+        slotConversationIds[slot] = EMPTY;
+        size--;
+    }
+
+    /**
+     * 召回结果
+     */
+    public static class Neighbor implements Comparable<Neighbor> {
+
+        private final int chatId;
+
+        private final float score;
+
+        Neighbor(int chatId, float score) {
+            this.chatId = chatId;
+            this.score = score;
+        }
+
+        public int getChatId() {
+            return chatId;
+        }
+
+        public float getScore() {
+            return score;
+        }
+
+        @Override
+        public int compareTo(Neighbor other) {
+            return Float.compare(score, other.score);
+        }
+    }
+
+    /**
+     * 一个会话占用的槽位
+     */
+    private static class SlotList {
+
+        private int[] slots = new int[8];
+
+        private int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        /**
+         * 与最后一个交换后删除，顺序无关
+         */
+        void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return;
+                }
+            }
+        }
+    }
+}
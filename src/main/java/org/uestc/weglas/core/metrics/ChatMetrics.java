@@ -0,0 +1,75 @@
+package org.uestc.weglas.core.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.core.router.LlmBackend;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天链路的指标记录
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class ChatMetrics {
+
+    public static final String TYPE_CHAT = "chat";
+
+    public static final String TYPE_STREAM = "stream";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 流式聊天从发起请求到收到首个chunk的时间
+     */
+    public void recordTimeToFirstToken(String llmModel, long nanos) {
+        Timer.builder("ai.chat.stream.ttft")
+                .description("流式聊天首个chunk的延迟")
+                .tag("model", String.valueOf(llmModel))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 流式聊天的输出速度，按首个chunk到结束的时间计算
+     *
+     * @param tokens       输出的估算token数
+     * @param elapsedNanos 首个chunk到结束的时间
+     */
+    public void recordStreamOutput(String llmModel, int tokens, long elapsedNanos) {
+        String model = String.valueOf(llmModel);
+        DistributionSummary.builder("ai.chat.stream.tokens")
+                .description("流式聊天输出的估算token数")
+                .tag("model", model)
+                .register(meterRegistry)
+                .record(tokens);
+        if (elapsedNanos > 0) {
+            DistributionSummary.builder("ai.chat.stream.tokens.per.second")
+                    .description("流式聊天的输出速度")
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .record(tokens * 1e9 / elapsedNanos);
+        }
+    }
+
+    /**
+     * 模型后端的响应延迟，同步请求为完整响应，流式请求为首个chunk
+     */
+    public void recordUpstreamLatency(LlmBackend backend, String type, long nanos) {
+        Timer.builder("ai.llm.upstream.latency")
+                .description("模型后端响应延迟")
+                .tag("model", backend.getModel())
+                .tag("backend", backend.getName())
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,253 @@
+package org.uestc.weglas.core.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.base.writer.ChatBatchWriter;
+import org.uestc.weglas.core.admission.AdaptiveConcurrencyLimiter;
+import org.uestc.weglas.core.admission.ChatAdmission;
+import org.uestc.weglas.core.admission.RedisTokenBucket;
+import org.uestc.weglas.core.bridge.MqttChatBridge;
+import org.uestc.weglas.core.cache.ChatResponseCache;
+import org.uestc.weglas.core.cache.ConversationCache;
+import org.uestc.weglas.core.client.MqttAsyncPublisher;
+import org.uestc.weglas.core.client.MqttBaseClient;
+import org.uestc.weglas.core.client.MqttConsumerClient;
+import org.uestc.weglas.core.client.MqttInboundDispatcher;
+import org.uestc.weglas.core.client.MqttProviderClient;
+import org.uestc.weglas.core.codec.MqttPayloadCodecs;
+import org.uestc.weglas.core.memory.ChatMemory;
+import org.uestc.weglas.core.router.LlmBackend;
+import org.uestc.weglas.core.router.LlmRouter;
+import org.uestc.weglas.core.scheduling.ChatInvocationScheduler;
+import org.uestc.weglas.core.search.ChatSearchIndex;
+import org.uestc.weglas.core.scheduling.InvocationPriority;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 把各组件已有的计数器注册为指标，读取时直接取组件的当前值，不在业务路径上额外计数
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class ComponentMetricsBinder {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ChatBatchWriter chatBatchWriter;
+
+    @Autowired
+    private ConversationCache conversationCache;
+
+    @Autowired
+    private ChatResponseCache chatResponseCache;
+
+    @Autowired
+    private MqttProviderClient providerClient;
+
+    @Autowired
+    private MqttConsumerClient consumerClient;
+
+    @Autowired
+    private MqttInboundDispatcher inboundDispatcher;
+
+    @Autowired
+    private MqttChatBridge chatBridge;
+
+    @Autowired
+    private MqttPayloadCodecs payloadCodecs;
+
+    @Autowired
+    private LlmRouter llmRouter;
+
+    @Autowired
+    private ChatAdmission chatAdmission;
+
+    @Autowired
+    private RedisTokenBucket tokenBucket;
+
+    @Autowired
+    private ChatInvocationScheduler invocationScheduler;
+
+    @Autowired
+    private ChatSearchIndex chatSearchIndex;
+
+    @Autowired
+    private ChatMemory chatMemory;
+
+    @PostConstruct
+    public void bind() {
+        bindChatWriter();
+        bindCaches();
+        bindMqtt();
+        bindRouter();
+        bindAdmission();
+        bindScheduler();
+        bindSearch();
+        bindMemory();
+    }
+
+    private void bindChatWriter() {
+        gauge("ai.chat.writer.queue.depth", chatBatchWriter, ChatBatchWriter::getQueueDepth);
+        counter("ai.chat.writer.flushed.rows", chatBatchWriter, ChatBatchWriter::getFlushedRows);
+        counter("ai.chat.writer.flushed.batches", chatBatchWriter, ChatBatchWriter::getFlushedBatches);
+        counter("ai.chat.writer.failed.rows", chatBatchWriter, ChatBatchWriter::getFailedRows);
+        counter("ai.chat.writer.coalesced.updates", chatBatchWriter, ChatBatchWriter::getCoalescedUpdates);
+    }
+
+    private void bindCaches() {
+        counter("ai.conversation.cache.hits", Tags.of("level", "local"), conversationCache,
+                ConversationCache::getLocalHits);
+        counter("ai.conversation.cache.hits", Tags.of("level", "redis"), conversationCache,
+                ConversationCache::getRedisHits);
+        counter("ai.conversation.cache.misses", conversationCache, ConversationCache::getMisses);
+        counter("ai.conversation.cache.redis.errors", conversationCache, ConversationCache::getRedisErrors);
+
+        gauge("ai.response.cache.size", chatResponseCache, ChatResponseCache::getSize);
+        counter("ai.response.cache.hits", chatResponseCache, ChatResponseCache::getHits);
+        counter("ai.response.cache.loads", chatResponseCache, ChatResponseCache::getLoads);
+        counter("ai.response.cache.coalesced", chatResponseCache, ChatResponseCache::getCoalesced);
+        counter("ai.response.cache.evictions", chatResponseCache, ChatResponseCache::getEvictions);
+    }
+
+    private void bindMqtt() {
+        MqttAsyncPublisher publisher = providerClient.getPublisher();
+        counter("mqtt.publish.published", publisher, MqttAsyncPublisher::getPublished);
+        counter("mqtt.publish.failed", publisher, MqttAsyncPublisher::getFailed);
+        counter("mqtt.publish.dropped", publisher, MqttAsyncPublisher::getDropped);
+        gauge("mqtt.publish.queue.depth", publisher, MqttAsyncPublisher::getQueueDepth);
+        gauge("mqtt.publish.inflight", publisher, MqttAsyncPublisher::getInflightCount);
+        gauge("mqtt.publish.pending.bytes", publisher, MqttAsyncPublisher::getPendingBytes);
+
+        counter("mqtt.inbound.received", inboundDispatcher, MqttInboundDispatcher::getReceived);
+        counter("mqtt.inbound.processed", inboundDispatcher, MqttInboundDispatcher::getProcessed);
+        counter("mqtt.inbound.failed", inboundDispatcher, MqttInboundDispatcher::getFailed);
+        counter("mqtt.inbound.dropped", inboundDispatcher, MqttInboundDispatcher::getDropped);
+        gauge("mqtt.inbound.queue.depth", inboundDispatcher, MqttInboundDispatcher::getQueueDepth);
+
+        bindMqttClient("provider", providerClient);
+        bindMqttClient("consumer", consumerClient);
+
+        counter("mqtt.bridge.requests", chatBridge, MqttChatBridge::getRequests);
+        counter("mqtt.bridge.rejected", chatBridge, MqttChatBridge::getRejected);
+        counter("mqtt.bridge.completed", chatBridge, MqttChatBridge::getCompleted);
+        counter("mqtt.bridge.failed", chatBridge, MqttChatBridge::getFailed);
+        gauge("mqtt.bridge.active", chatBridge, MqttChatBridge::getActive);
+
+        counter("mqtt.codec.compressed", payloadCodecs, MqttPayloadCodecs::getCompressed);
+        counter("mqtt.codec.bytes.before.compress", payloadCodecs, MqttPayloadCodecs::getBytesBeforeCompress);
+        counter("mqtt.codec.bytes.after.compress", payloadCodecs, MqttPayloadCodecs::getBytesAfterCompress);
+    }
+
+    private void bindMqttClient(String name, MqttBaseClient client) {
+        Tags tags = Tags.of("client", name);
+        gauge("mqtt.client.connected", tags, client, c -> c.isConnected() ? 1 : 0);
+        counter("mqtt.client.reconnects", tags, client, MqttBaseClient::getReconnectCount);
+        counter("mqtt.client.connection.lost", tags, client, MqttBaseClient::getConnectionLostCount);
+    }
+
+    private void bindRouter() {
+        counter("ai.llm.hedged", llmRouter, LlmRouter::getHedged);
+        counter("ai.llm.hedge.wins", llmRouter, LlmRouter::getHedgeWins);
+        for (List<LlmBackend> pool : llmRouter.getPools().values()) {
+            for (LlmBackend backend : pool) {
+                Tags tags = Tags.of("model", backend.getModel(), "backend", backend.getName());
+                gauge("ai.llm.backend.outstanding", tags, backend, LlmBackend::getOutstanding);
+                gauge("ai.llm.backend.max.concurrency", tags, backend, LlmBackend::getMaxConcurrency);
+                gauge("ai.llm.backend.latency.ewma", tags, backend, LlmBackend::getLatencyEwmaMillis);
+                gauge("ai.llm.backend.healthy", tags, backend, b -> b.isHealthy() ? 1 : 0);
+                // 0:CLOSED 1:OPEN 2:HALF_OPEN
+                gauge("ai.llm.backend.circuit.state", tags, backend, b -> b.getCircuitState().ordinal());
+                counter("ai.llm.backend.circuit.opens", tags, backend, LlmBackend::getCircuitOpenCount);
+                counter("ai.llm.backend.requests", tags, backend, LlmBackend::getRequests);
+                counter("ai.llm.backend.failures", tags, backend, LlmBackend::getFailures);
+                counter("ai.llm.backend.rejected", tags, backend, LlmBackend::getRejected);
+                counter("ai.llm.backend.timeouts", tags, backend, LlmBackend::getTimeouts);
+            }
+        }
+    }
+
+    private void bindAdmission() {
+        counter("ai.admission.rate.limited", chatAdmission, ChatAdmission::getRateLimited);
+        counter("ai.admission.redis.errors", tokenBucket, RedisTokenBucket::getRedisErrors);
+        bindLimiter("sync", chatAdmission.getSyncLimiter());
+        bindLimiter("stream", chatAdmission.getStreamLimiter());
+    }
+
+    private void bindLimiter(String type, AdaptiveConcurrencyLimiter limiter) {
+        Tags tags = Tags.of("type", type);
+        gauge("ai.admission.concurrency.limit", tags, limiter, AdaptiveConcurrencyLimiter::getLimit);
+        gauge("ai.admission.concurrency.inflight", tags, limiter, AdaptiveConcurrencyLimiter::getInflight);
+        gauge("ai.admission.concurrency.baseline", tags, limiter, l -> l.getBaseline() / 1e6);
+        counter("ai.admission.concurrency.rejected", tags, limiter, AdaptiveConcurrencyLimiter::getRejected);
+    }
+
+    private void bindScheduler() {
+        gauge("ai.invocation.running", invocationScheduler, ChatInvocationScheduler::getRunning);
+        for (Map.Entry<InvocationPriority, ChatInvocationScheduler.ClassStats> entry
+                : invocationScheduler.getStats().entrySet()) {
+            Tags tags = Tags.of("priority", entry.getKey().name());
+            ChatInvocationScheduler.ClassStats stats = entry.getValue();
+            gauge("ai.invocation.queued", tags, stats, ChatInvocationScheduler.ClassStats::getQueued);
+            FunctionTimer.builder("ai.invocation.queue.wait", stats,
+                    ChatInvocationScheduler.ClassStats::getDispatched,
+                    ChatInvocationScheduler.ClassStats::getTotalWaitNanos, TimeUnit.NANOSECONDS)
+                    .tags(tags)
+                    .description("模型调用的排队时间")
+                    .register(meterRegistry);
+            gauge("ai.invocation.queue.wait.max", tags, stats, s -> s.getMaxWaitNanos() / 1e6);
+            counter("ai.invocation.expired", tags, stats, ChatInvocationScheduler.ClassStats::getExpired);
+            counter("ai.invocation.rejected", tags, stats, ChatInvocationScheduler.ClassStats::getRejected);
+        }
+    }
+
+    private void bindSearch() {
+        gauge("ai.search.index.docs", chatSearchIndex, ChatSearchIndex::getNumDocs);
+        gauge("ai.search.index.rebuilding", chatSearchIndex, i -> i.isRebuilding() ? 1 : 0);
+        gauge("ai.search.index.rebuild.last", chatSearchIndex, ChatSearchIndex::getLastRebuildMillis);
+        counter("ai.search.index.indexed", chatSearchIndex, ChatSearchIndex::getIndexed);
+        counter("ai.search.index.failed", chatSearchIndex, ChatSearchIndex::getFailed);
+        counter("ai.search.index.rebuilds", chatSearchIndex, ChatSearchIndex::getRebuilds);
+        counter("ai.search.queries", chatSearchIndex, ChatSearchIndex::getSearches);
+    }
+
+    private void bindMemory() {
+        gauge("ai.memory.vectors", chatMemory, ChatMemory::getSize);
+        gauge("ai.memory.capacity", chatMemory, ChatMemory::getCapacity);
+        gauge("ai.memory.offheap.bytes", chatMemory, ChatMemory::getOffHeapBytes);
+        counter("ai.memory.embedded", chatMemory, ChatMemory::getEmbedded);
+        counter("ai.memory.failed", chatMemory, ChatMemory::getFailed);
+        counter("ai.memory.recalls", chatMemory, ChatMemory::getRecalls);
+        counter("ai.memory.recalled", chatMemory, ChatMemory::getRecalled);
+        counter("ai.memory.backfills", chatMemory, ChatMemory::getBackfills);
+        counter("ai.memory.evictions", chatMemory, ChatMemory::getEvictions);
+    }
+
+    private <T> void gauge(String name, T obj, ToDoubleFunction<T> f) {
+        gauge(name, Tags.empty(), obj, f);
+    }
+
+    private <T> void gauge(String name, Tags tags, T obj, ToDoubleFunction<T> f) {
+        Gauge.builder(name, obj, f).tags(tags).register(meterRegistry);
+    }
+
+    private <T> void counter(String name, T obj, ToDoubleFunction<T> f) {
+        counter(name, Tags.empty(), obj, f);
+    }
+
+    private <T> void counter(String name, Tags tags, T obj, ToDoubleFunction<T> f) {
+        FunctionCounter.builder(name, obj, f).tags(tags).register(meterRegistry);
+    }
+}
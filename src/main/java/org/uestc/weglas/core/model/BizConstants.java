@@ -24,4 +24,59 @@ public class BizConstants {
      * mqtt是否保留消息
      */
     public static final Boolean MQTT_RETAINED = true;
+
+    /**
+     * 会话列表默认分页大小
+     */
+    public static final int CONVERSATION_PAGE_SIZE = 20;
+
+    /**
+     * 会话列表最大分页大小
+     */
+    public static final int CONVERSATION_MAX_PAGE_SIZE = 100;
+
+    /**
+     * 聊天记录默认分页大小
+     */
+    public static final int CHAT_PAGE_SIZE = 50;
+
+    /**
+     * 聊天记录最大分页大小
+     */
+    public static final int CHAT_MAX_PAGE_SIZE = 200;
+
+    /**
+     * 聊天检索默认返回条数
+     */
+    public static final int SEARCH_PAGE_SIZE = 20;
+
+    /**
+     * 聊天ext中的生成状态，参见 ChatStatusEnum
+     */
+    public static final String CHAT_EXT_STATUS = "status";
+
+    /**
+     * 流式聊天每批向上游请求的chunk数
+     */
+    public static final int STREAM_CHAT_PREFETCH = 64;
+
+    /**
+     * 流式聊天响应缓冲区的初始大小
+     */
+    public static final int STREAM_CHAT_BUFFER_SIZE = 4096;
+
+    /**
+     * 设备会话的标题前缀
+     */
+    public static final String DEVICE_CONVERSATION_TITLE_PREFIX = "设备-";
+
+    /**
+     * 聊天ext中的设备id
+     */
+    public static final String CHAT_EXT_DEVICE_ID = "deviceId";
+
+    /**
+     * 聊天ext中的请求关联id
+     */
+    public static final String CHAT_EXT_CORRELATION_ID = "correlationId";
 }
@@ -27,6 +27,11 @@ public class Conversation extends ToString {
 
     private String llmModel;
 
+    /**
+     * 绑定的设备id，普通会话为空
+     */
+    private String deviceId;
+
     private Map<String, String> ext = new HashMap<>();
 
 
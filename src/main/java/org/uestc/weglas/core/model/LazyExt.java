@@ -0,0 +1,199 @@
+package org.uestc.weglas.core.model;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.apache.commons.lang.StringUtils;
+import org.uestc.weglas.core.converter.ExtConverter;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 延迟解析的ext
+ * 从db读出时只保存原始json，第一次读取内容时才解析；没有修改过时写回db和序列化都直接使用原始json。
+ * 绝大多数查询不读ext，省去逐行解析和建map的开销。
+ * 通过entrySet只能读，修改必须经过put/remove/clear，以便记录是否修改过。
+ * 解析只进行一次，可在多个线程间共享读取；与HashMap一样，并发修改需要调用方自行同步。
+ * 原始json不合法时按空ext处理。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@JsonSerialize(using = LazyExt.RawJsonSerializer.class)
+public class LazyExt extends AbstractMap<String, String> {
+
+    private static final String EMPTY_JSON = "{}";
+
+    private static final String NULL_JSON = "null";
+
+    /**
+     * db中的原始json，已解析且修改后不再使用
+     */
+    private final String raw;
+
+    private volatile Map<String, String> map;
+
+    private volatile boolean modified;
+
+    private LazyExt(String raw) {
+        this.raw = isEmptyJson(raw) ? null : raw;
+    }
+
+    public static LazyExt of(String raw) {
+        return new LazyExt(raw);
+    }
+
+    /**
+     * 复制，未解析时只复制原始json
+     */
+    public LazyExt copy() {
+        Map<String, String> current = map;
+        if (current == null) {
+            return new LazyExt(raw);
+        }
+        LazyExt copy = new LazyExt(null);
+        copy.map = new HashMap<>(current);
+        copy.modified = modified;
+        return copy;
+    }
+
+    /**
+     * 写回db的json，为空时返回 {@code null}
+     */
+    public String toJson() {
+        if (!modified) {
+            return raw;
+        }
+        Map<String, String> current = decoded();
+        return current.isEmpty() ? null : JSON.toJSONString(current);
+    }
+
+    public boolean isParsed() {
+        return map != null;
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    @Override
+    public int size() {
+        return decoded().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        Map<String, String> current = map;
+        return current == null ? raw == null : current.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return decoded().containsKey(key);
+    }
+
+    @Override
+    public String get(Object key) {
+        return decoded().get(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        modified = true;
+        return decoded().put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        modified = true;
+        return decoded().remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> m) {
+        modified = true;
+        decoded().putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        modified = true;
+        map = new HashMap<>();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return Collections.unmodifiableMap(decoded()).entrySet();
+    }
+
+    @Override
+    public String toString() {
+        if (map == null) {
+            return raw == null ? EMPTY_JSON : raw;
+        }
+        return super.toString();
+    }
+
+    private Map<String, String> decoded() {
+        Map<String, String> current = map;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (map == null) {
+                map = parse(raw);
+            }
+            return map;
+        }
+    }
+
+    private static Map<String, String> parse(String raw) {
+        if (raw == null) {
+            return new HashMap<>();
+        }
+        try {
+            Map<String, String> parsed = ExtConverter.parse(raw);
+            return parsed == null ? new HashMap<>() : parsed;
+        } catch (JSONException e) {
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * 兼容历史数据中的空串和写错的 "null"
+     */
+    private static boolean isEmptyJson(String json) {
+        if (StringUtils.isBlank(json)) {
+            return true;
+        }
+        String trimmed = json.trim();
+        return EMPTY_JSON.equals(trimmed) || NULL_JSON.equals(trimmed);
+    }
+
+    /**
+     * 未解析时校验原始json后直接输出，不建map；不是合法json对象时按解析结果输出
+     */
+    public static class RawJsonSerializer extends JsonSerializer<LazyExt> {
+
+        @Override
+        public void serialize(LazyExt ext, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            if (ext.map == null && (ext.raw == null || JSON.isValidObject(ext.raw))) {
+                gen.writeRawValue(ext.raw == null ? EMPTY_JSON : ext.raw);
+                return;
+            }
+            gen.writeStartObject();
+            for (Map.Entry<String, String> entry : ext.decoded().entrySet()) {
+                gen.writeStringField(entry.getKey(), entry.getValue());
+            }
+            gen.writeEndObject();
+        }
+    }
+}
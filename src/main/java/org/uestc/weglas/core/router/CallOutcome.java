@@ -0,0 +1,19 @@
+package org.uestc.weglas.core.router;
+
+/**
+ * 后端调用结果，决定熔断器如何计数
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public enum CallOutcome {
+
+    SUCCESS,
+
+    FAILURE,
+
+    /**
+     * 调用方取消，如客户端断开或对冲请求落败，不计入成功或失败
+     */
+    CANCELLED,
+}
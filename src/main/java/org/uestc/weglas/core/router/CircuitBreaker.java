@@ -0,0 +1,106 @@
+package org.uestc.weglas.core.router;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 后端熔断器
+ * 连续失败达到阈值后熔断，熔断时间过后进入半开状态放行有限个探测请求，
+ * 探测成功则恢复，失败则重新熔断。被取消的请求（如对冲请求的落败方）不计入结果。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class CircuitBreaker {
+
+    private final int failureThreshold;
+
+    /**
+     * 熔断时间，单位毫秒
+     */
+    private final long openDuration;
+
+    private final int halfOpenProbes;
+
+    private volatile CircuitState state = CircuitState.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    private int probesInFlight;
+
+    private final AtomicLong openCount = new AtomicLong();
+
+    public CircuitBreaker(int failureThreshold, long openDuration, int halfOpenProbes) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * 是否放行请求，放行后必须调用 onSuccess/onFailure/onIgnore 之一
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == CircuitState.CLOSED) {
+            return true;
+        }
+        if (state == CircuitState.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDuration) {
+                return false;
+            }
+            state = CircuitState.HALF_OPEN;
+            probesInFlight = 0;
+        }
+        if (probesInFlight >= halfOpenProbes) {
+            return false;
+        }
+        probesInFlight++;
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state == CircuitState.HALF_OPEN) {
+            state = CircuitState.CLOSED;
+            probesInFlight = 0;
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == CircuitState.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == CircuitState.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * 请求被取消，不影响熔断状态，只归还探测名额
+     */
+    public synchronized void onIgnore() {
+        if (state == CircuitState.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    public CircuitState getState() {
+        return state;
+    }
+
+    /**
+     * 累计熔断次数
+     */
+    public long getOpenCount() {
+        return openCount.get();
+    }
+
+    private void open() {
+        state = CircuitState.OPEN;
+        openedAt = System.currentTimeMillis();
+        consecutiveFailures = 0;
+        probesInFlight = 0;
+        openCount.incrementAndGet();
+    }
+}
@@ -0,0 +1,25 @@
+package org.uestc.weglas.core.router;
+
+/**
+ * 熔断器状态
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public enum CircuitState {
+
+    /**
+     * 正常放行
+     */
+    CLOSED,
+
+    /**
+     * 熔断，拒绝请求
+     */
+    OPEN,
+
+    /**
+     * 熔断时间已过，放行少量探测请求
+     */
+    HALF_OPEN,
+}
@@ -0,0 +1,65 @@
+package org.uestc.weglas.core.router;
+
+import java.util.Arrays;
+
+/**
+ * 最近若干次请求延迟的滑动窗口，用于计算对冲请求的触发延迟
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class LatencyWindow {
+
+    /**
+     * 每记录多少次重新计算一次分位数
+     */
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    private final long[] samples;
+
+    private int next;
+
+    private int size;
+
+    private int sinceRecompute;
+
+    private double cachedPercentile = -1;
+
+    private long cachedValue = -1;
+
+    public LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+        sinceRecompute++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return 分位数延迟，单位纳秒，没有样本时为 -1
+     */
+    public synchronized long percentile(double percentile) {
+        if (size == 0) {
+            return -1;
+        }
+        if (percentile == cachedPercentile && sinceRecompute < RECOMPUTE_INTERVAL) {
+            return cachedValue;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * size) - 1;
+        cachedValue = sorted[Math.max(0, Math.min(index, size - 1))];
+        cachedPercentile = percentile;
+        sinceRecompute = 0;
+        return cachedValue;
+    }
+}
@@ -0,0 +1,207 @@
+package org.uestc.weglas.core.router;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型后端，记录并发、延迟、熔断和健康状态
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class LlmBackend {
+
+    private final String model;
+
+    private final String name;
+
+    private final String chatUrl;
+
+    private final String streamChatUrl;
+
+    private final String healthUrl;
+
+    private final int maxConcurrency;
+
+    /**
+     * 同步请求的超时时间，单位毫秒
+     */
+    private final long timeout;
+
+    /**
+     * 流式请求等待首个chunk的超时时间，单位毫秒
+     */
+    private final long firstChunkTimeout;
+
+    private final Semaphore permits;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final LatencyWindow latencyWindow;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * 延迟EWMA，单位纳秒，流式请求取首个chunk的延迟
+     */
+    private volatile double latencyEwma;
+
+    /**
+     * 主动健康检查结果
+     */
+    private volatile boolean healthy = true;
+
+    public LlmBackend(String model, LlmRouterProperties.Endpoint endpoint, CircuitBreaker circuitBreaker,
+                      LatencyWindow latencyWindow) {
+        this.model = model;
+        this.name = endpoint.getName();
+        this.chatUrl = endpoint.getChatUrl();
+        this.streamChatUrl = endpoint.getStreamChatUrl();
+        this.healthUrl = endpoint.getHealthUrl();
+        this.maxConcurrency = endpoint.getMaxConcurrency();
+        this.timeout = endpoint.getTimeout();
+        this.firstChunkTimeout = endpoint.getFirstChunkTimeout();
+        this.permits = new Semaphore(maxConcurrency);
+        this.circuitBreaker = circuitBreaker;
+        this.latencyWindow = latencyWindow;
+    }
+
+    boolean tryAcquire() {
+        if (!circuitBreaker.tryAcquire()) {
+            return false;
+        }
+        if (!permits.tryAcquire()) {
+            circuitBreaker.onIgnore();
+            rejected.incrementAndGet();
+            return false;
+        }
+        outstanding.incrementAndGet();
+        requests.incrementAndGet();
+        return true;
+    }
+
+    void release(CallOutcome outcome) {
+        outstanding.decrementAndGet();
+        permits.release();
+        switch (outcome) {
+            case SUCCESS:
+                circuitBreaker.onSuccess();
+                break;
+            case FAILURE:
+                failures.incrementAndGet();
+                circuitBreaker.onFailure();
+                break;
+            case CANCELLED:
+            default:
+                circuitBreaker.onIgnore();
+        }
+    }
+
+    synchronized void recordLatency(long nanos, double alpha) {
+        latencyEwma = latencyEwma == 0 ? nanos : latencyEwma + alpha * (nanos - latencyEwma);
+        latencyWindow.record(nanos);
+    }
+
+    void recordFailedLatency(long nanos) {
+        latencyWindow.record(nanos);
+    }
+
+    void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    void setHealthy(boolean healthy) {
+        this.healthy = healthy;
+    }
+
+    /**
+     * 延迟分位数，单位纳秒，样本不足时为 -1
+     */
+    long latencyPercentile(double percentile, int minSamples) {
+        return latencyWindow.size() < minSamples ? -1 : latencyWindow.percentile(percentile);
+    }
+
+    /**
+     * 延迟加权的代价，没有延迟样本时为0，优先分配流量以获得样本
+     */
+    double latencyCost() {
+        return latencyEwma * (outstanding.get() + 1);
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getChatUrl() {
+        return chatUrl;
+    }
+
+    public String getStreamChatUrl() {
+        return streamChatUrl;
+    }
+
+    public String getHealthUrl() {
+        return healthUrl;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public long getFirstChunkTimeout() {
+        return firstChunkTimeout;
+    }
+
+    public CircuitState getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public long getCircuitOpenCount() {
+        return circuitBreaker.getOpenCount();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public double getLatencyEwmaMillis() {
+        return latencyEwma / 1_000_000d;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+}
@@ -0,0 +1,283 @@
+package org.uestc.weglas.core.router;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.log.LogUtil;
+import reactor.core.publisher.SignalType;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型路由
+ * 按会话的llmModel选择后端池，在健康且未达并发上限的后端中按负载均衡策略选择。
+ * 每个后端的并发由许可控制，一个后端打满不会占用其他后端的连接；全部打满或熔断时直接返回SYSTEM_BUSY。
+ * 未配置任何后端的模型使用默认模型，默认模型未配置时使用 spring.ai.chat-url / stream-chat-url。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class LlmRouter {
+
+    private static final Logger logger = LogManager.getLogger(LlmRouter.class);
+
+    @Value("${spring.ai.chat-url}")
+    private String aiChatURL;
+
+    @Value("${spring.ai.stream-chat-url}")
+    private String aiStreamChatURL;
+
+    @Autowired
+    private LlmRouterProperties properties;
+
+    @Autowired
+    private WebClient aiWebClient;
+
+    private final Map<String, List<LlmBackend>> pools = new HashMap<>();
+
+    private final AtomicLong hedged = new AtomicLong();
+
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    private final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("llm-health-check-%d").setDaemon(true).build());
+
+    @PostConstruct
+    public void init() {
+        for (Map.Entry<String, List<LlmRouterProperties.Endpoint>> entry : properties.getModels().entrySet()) {
+            List<LlmBackend> pool = new ArrayList<>();
+            for (LlmRouterProperties.Endpoint endpoint : entry.getValue()) {
+                pool.add(newBackend(entry.getKey(), endpoint));
+            }
+            if (!pool.isEmpty()) {
+                pools.put(entry.getKey(), pool);
+            }
+        }
+        if (!pools.containsKey(properties.getDefaultModel())) {
+            LlmRouterProperties.Endpoint defaults = new LlmRouterProperties.Endpoint();
+            defaults.setName(properties.getDefaultModel());
+            defaults.setChatUrl(aiChatURL);
+            defaults.setStreamChatUrl(aiStreamChatURL);
+            pools.put(properties.getDefaultModel(),
+                    Collections.singletonList(newBackend(properties.getDefaultModel(), defaults)));
+        }
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, properties.getHealthCheckInterval(),
+                properties.getHealthCheckInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        healthChecker.shutdownNow();
+    }
+
+    /**
+     * 为模型选择后端并占用一个并发许可，使用完必须调用 {@link #release}
+     */
+    public LlmBackend acquire(String llmModel) {
+        LlmBackend backend = tryAcquire(llmModel, null);
+        if (backend == null) {
+            LogUtil.warn(logger, "all llm backends busy or open,model=", llmModel);
+            throw new ManagerBizException(ResultEnum.SYSTEM_BUSY);
+        }
+        return backend;
+    }
+
+    /**
+     * 为对冲请求选择后端，优先选择主请求以外的后端
+     *
+     * @return 没有可用后端时为 {@code null}
+     */
+    public LlmBackend acquireHedge(String llmModel, LlmBackend primary) {
+        LlmBackend backend = tryAcquire(llmModel, primary);
+        if (backend != null) {
+            hedged.incrementAndGet();
+        }
+        return backend;
+    }
+
+    /**
+     * 对冲请求的触发延迟，单位毫秒，不对冲时为 -1
+     */
+    public long hedgeDelay(LlmBackend primary) {
+        if (!properties.isHedgeEnabled()) {
+            return -1;
+        }
+        long nanos = primary.latencyPercentile(properties.getHedgePercentile(), properties.getHedgeMinSamples());
+        if (nanos < 0) {
+            return -1;
+        }
+        return Math.max(properties.getHedgeMinDelay(), TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    public void recordHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    /**
+     * 归还许可，并按调用结果更新熔断器
+     */
+    public void release(LlmBackend backend, CallOutcome outcome) {
+        CircuitState before = backend.getCircuitState();
+        backend.release(outcome);
+        CircuitState after = backend.getCircuitState();
+        if (before != after) {
+            LogUtil.warn(logger, "llm backend circuit changed,model=", backend.getModel(), ",backend=",
+                    backend.getName(), ",state=", after);
+        }
+    }
+
+    /**
+     * 按reactor终止信号归还许可：出错为失败，取消不计入结果
+     */
+    public void release(LlmBackend backend, SignalType signal) {
+        release(backend, signal == SignalType.ON_ERROR ? CallOutcome.FAILURE
+                : signal == SignalType.CANCEL ? CallOutcome.CANCELLED : CallOutcome.SUCCESS);
+    }
+
+    public void recordTimeout(LlmBackend backend) {
+        backend.recordTimeout();
+    }
+
+    /**
+     * 记录一次请求的延迟，流式请求记录首个chunk的延迟
+     */
+    public void recordLatency(LlmBackend backend, long nanos) {
+        backend.recordLatency(nanos, properties.getLatencyEwmaAlpha());
+    }
+
+    /**
+     * 记录失败、超时或被取消的请求耗时，只计入对冲分位数，不影响按延迟的路由
+     */
+    public void recordFailedLatency(LlmBackend backend, long nanos) {
+        backend.recordFailedLatency(nanos);
+    }
+
+    public Map<String, List<LlmBackend>> getPools() {
+        return Collections.unmodifiableMap(pools);
+    }
+
+    /**
+     * 发出的对冲请求数
+     */
+    public long getHedged() {
+        return hedged.get();
+    }
+
+    /**
+     * 对冲请求先于主请求返回的次数
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    private LlmBackend newBackend(String model, LlmRouterProperties.Endpoint endpoint) {
+        return new LlmBackend(model, endpoint,
+                new CircuitBreaker(properties.getFailureThreshold(), properties.getOpenDuration(),
+                        properties.getHalfOpenProbes()),
+                new LatencyWindow(properties.getLatencyWindowSize()));
+    }
+
+    private LlmBackend tryAcquire(String llmModel, LlmBackend exclude) {
+        List<LlmBackend> pool = poolOf(llmModel);
+
+        List<LlmBackend> candidates = new ArrayList<>(pool.size());
+        for (LlmBackend backend : pool) {
+            if (backend.isHealthy()) {
+                candidates.add(backend);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // 全部健康检查失败时放开摘除，避免健康检查误判造成整体不可用，仍受熔断器保护
+            candidates.addAll(pool);
+        }
+
+        order(candidates);
+        if (exclude != null && candidates.remove(exclude)) {
+            // 排除的后端放到最后，没有其他后端时仍可使用
+            candidates.add(exclude);
+        }
+        for (LlmBackend backend : candidates) {
+            if (backend.tryAcquire()) {
+                return backend;
+            }
+        }
+        return null;
+    }
+
+    private List<LlmBackend> poolOf(String llmModel) {
+        List<LlmBackend> pool = StringUtils.isBlank(llmModel) ? null : pools.get(llmModel);
+        return pool == null ? pools.get(properties.getDefaultModel()) : pool;
+    }
+
+    /**
+     * 按代价从低到高排序，先打乱再稳定排序使同等代价的后端随机选择。
+     * 代价先取快照，避免排序过程中并发变化破坏比较的一致性。
+     */
+    private void order(List<LlmBackend> candidates) {
+        Collections.shuffle(candidates, ThreadLocalRandom.current());
+        Map<LlmBackend, Double> costs = new IdentityHashMap<>(candidates.size());
+        for (LlmBackend backend : candidates) {
+            costs.put(backend, properties.getStrategy() == LoadBalanceStrategy.LATENCY_WEIGHTED
+                    ? backend.latencyCost() : backend.getOutstanding());
+        }
+        candidates.sort(Comparator.comparingDouble(costs::get));
+    }
+
+    private void checkHealth() {
+        try {
+            doCheckHealth();
+        } catch (RuntimeException e) {
+            // 异常不能抛出，否则定时任务终止
+            LogUtil.error(logger, e, "llm backend health check failed.");
+        }
+    }
+
+    private void doCheckHealth() {
+        for (List<LlmBackend> pool : pools.values()) {
+            for (LlmBackend backend : pool) {
+                if (StringUtils.isBlank(backend.getHealthUrl())) {
+                    // 没有健康检查地址时只靠熔断器做被动检查
+                    continue;
+                }
+                aiWebClient.get()
+                        .uri(backend.getHealthUrl())
+                        .exchange()
+                        .flatMap(response -> response.bodyToMono(Void.class)
+                                .thenReturn(response.statusCode().is2xxSuccessful()))
+                        .timeout(Duration.ofMillis(properties.getHealthCheckTimeout()))
+                        .onErrorReturn(false)
+                        .subscribe(ok -> updateHealth(backend, ok));
+            }
+        }
+    }
+
+    private void updateHealth(LlmBackend backend, boolean ok) {
+        if (ok != backend.isHealthy()) {
+            LogUtil.warn(logger, "llm backend health changed,model=", backend.getModel(), ",backend=",
+                    backend.getName(), ",healthy=", ok);
+        }
+        backend.setHealthy(ok);
+    }
+}
@@ -0,0 +1,118 @@
+package org.uestc.weglas.core.router;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模型路由配置
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "spring.ai.router")
+public class LlmRouterProperties {
+
+    private LoadBalanceStrategy strategy = LoadBalanceStrategy.LEAST_OUTSTANDING;
+
+    /**
+     * 会话未指定模型或模型未配置时使用的模型
+     */
+    private String defaultModel = "default";
+
+    /**
+     * 健康检查间隔，单位毫秒
+     */
+    private long healthCheckInterval = 10000;
+
+    /**
+     * 健康检查超时时间，单位毫秒
+     */
+    private long healthCheckTimeout = 2000;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    private int failureThreshold = 3;
+
+    /**
+     * 熔断时间，过后进入半开状态，单位毫秒
+     */
+    private long openDuration = 30000;
+
+    /**
+     * 半开状态同时放行的探测请求数
+     */
+    private int halfOpenProbes = 1;
+
+    /**
+     * 每个后端保留的延迟样本数
+     */
+    private int latencyWindowSize = 256;
+
+    /**
+     * 同步聊天是否开启对冲请求
+     */
+    private boolean hedgeEnabled = false;
+
+    /**
+     * 主请求超过该分位数延迟仍未返回时发出对冲请求
+     */
+    private double hedgePercentile = 0.95;
+
+    /**
+     * 对冲请求的最小等待时间，单位毫秒
+     */
+    private long hedgeMinDelay = 100;
+
+    /**
+     * 延迟样本少于该数量时不对冲
+     */
+    private int hedgeMinSamples = 20;
+
+    /**
+     * 延迟EWMA的平滑系数，越大越偏向最近的请求
+     */
+    private double latencyEwmaAlpha = 0.3;
+
+    /**
+     * 按模型配置后端，key为llmModel
+     */
+    private Map<String, List<Endpoint>> models = new HashMap<>();
+
+    @Data
+    public static class Endpoint {
+
+        private String name;
+
+        private String chatUrl;
+
+        private String streamChatUrl;
+
+        /**
+         * 健康检查地址，为空时只做被动检查
+         */
+        private String healthUrl;
+
+        /**
+         * 该后端的最大并发请求数
+         */
+        private int maxConcurrency = 64;
+
+        /**
+         * 同步请求超时时间，单位毫秒
+         */
+        private long timeout = 60000;
+
+        /**
+         * 流式请求等待首个chunk的超时时间，单位毫秒
+         */
+        private long firstChunkTimeout = 30000;
+    }
+}
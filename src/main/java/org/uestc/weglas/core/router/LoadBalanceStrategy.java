@@ -0,0 +1,20 @@
+package org.uestc.weglas.core.router;
+
+/**
+ * 模型后端负载均衡策略
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public enum LoadBalanceStrategy {
+
+    /**
+     * 选择未完成请求最少的后端
+     */
+    LEAST_OUTSTANDING,
+
+    /**
+     * 按 延迟EWMA * (未完成请求数 + 1) 选择代价最小的后端
+     */
+    LATENCY_WEIGHTED,
+}
@@ -0,0 +1,382 @@
+package org.uestc.weglas.core.scheduling;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.log.LogUtil;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型调用的优先级调度
+ * 同时进行的模型调用数受限，超出的调用按优先级类别排队：类别之间按权重平滑轮询，
+ * 保证高优先级优先又不让后台请求饿死；同一类别内按会话轮询，一个会话的大量请求不会挤占其他会话。
+ * 排队超过该类别的等待上限时放弃，返回SYSTEM_BUSY。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class ChatInvocationScheduler {
+
+    private static final Logger logger = LogManager.getLogger(ChatInvocationScheduler.class);
+
+    private static final int WAITING = 0;
+
+    private static final int GRANTED = 1;
+
+    private static final int CANCELLED = 2;
+
+    private static final int FINISHED = 3;
+
+    @Value("${spring.ai.invocation-queue.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 同时进行的模型调用数上限
+     */
+    @Value("${spring.ai.invocation-queue.max-concurrency:64}")
+    private int maxConcurrency;
+
+    /**
+     * 排队调用数上限，超出时直接拒绝
+     */
+    @Value("${spring.ai.invocation-queue.max-queue-size:1000}")
+    private int maxQueueSize;
+
+    /**
+     * 各类别的调度权重
+     */
+    @Value("${spring.ai.invocation-queue.stream-weight:6}")
+    private int streamWeight;
+
+    @Value("${spring.ai.invocation-queue.sync-weight:3}")
+    private int syncWeight;
+
+    @Value("${spring.ai.invocation-queue.background-weight:1}")
+    private int backgroundWeight;
+
+    /**
+     * 各类别的最长排队时间，单位毫秒
+     */
+    @Value("${spring.ai.invocation-queue.stream-queue-timeout:5000}")
+    private long streamQueueTimeout;
+
+    @Value("${spring.ai.invocation-queue.sync-queue-timeout:10000}")
+    private long syncQueueTimeout;
+
+    @Value("${spring.ai.invocation-queue.background-queue-timeout:30000}")
+    private long backgroundQueueTimeout;
+
+    private final Map<InvocationPriority, ClassQueue> queues = new EnumMap<>(InvocationPriority.class);
+
+    private int running;
+
+    private int queued;
+
+    @PostConstruct
+    public void init() {
+        queues.put(InvocationPriority.INTERACTIVE_STREAM, new ClassQueue(streamWeight, streamQueueTimeout));
+        queues.put(InvocationPriority.SYNC, new ClassQueue(syncWeight, syncQueueTimeout));
+        queues.put(InvocationPriority.BACKGROUND, new ClassQueue(backgroundWeight, backgroundQueueTimeout));
+    }
+
+    /**
+     * 排队获得调用许可后订阅call，call结束、出错或取消时归还许可
+     *
+     * @param priority       优先级类别
+     * @param conversationId 会话id，用于同类别内的公平轮询
+     * @param call           模型调用
+     */
+    public <T> Flux<T> schedule(InvocationPriority priority, Integer conversationId, Flux<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return Flux.defer(() -> {
+            Waiter waiter = new Waiter(priority, String.valueOf(conversationId));
+            return awaitTurn(waiter).thenMany(call).doFinally(signal -> finish(waiter));
+        });
+    }
+
+    public <T> Mono<T> schedule(InvocationPriority priority, Integer conversationId, Mono<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            Waiter waiter = new Waiter(priority, String.valueOf(conversationId));
+            return awaitTurn(waiter).then(call).doFinally(signal -> finish(waiter));
+        });
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    /**
+     * 各类别的统计
+     */
+    public Map<InvocationPriority, ClassStats> getStats() {
+        Map<InvocationPriority, ClassStats> stats = new EnumMap<>(InvocationPriority.class);
+        for (Map.Entry<InvocationPriority, ClassQueue> entry : queues.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().stats);
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    private Mono<Void> awaitTurn(Waiter waiter) {
+        ClassQueue queue = queues.get(waiter.priority);
+        return Mono.<Void>create(sink -> {
+                    waiter.sink = sink;
+                    sink.onCancel(() -> cancel(waiter));
+                    enqueue(waiter);
+                })
+                .timeout(Duration.ofMillis(queue.timeout))
+                .onErrorMap(TimeoutException.class, e -> {
+                    queue.stats.expired.incrementAndGet();
+                    LogUtil.warn(logger, "model invocation queue timeout,priority=", waiter.priority,
+                            ",conversationId=", waiter.conversationKey);
+                    return new ManagerBizException(ResultEnum.SYSTEM_BUSY);
+                });
+    }
+
+    private void enqueue(Waiter waiter) {
+        ClassQueue queue = queues.get(waiter.priority);
+        boolean accepted;
+        synchronized (this) {
+            accepted = queued < maxQueueSize;
+            if (accepted) {
+                queue.offer(waiter);
+                queued++;
+            }
+        }
+        if (!accepted) {
+            queue.stats.rejected.incrementAndGet();
+            waiter.state.set(CANCELLED);
+            waiter.sink.error(new ManagerBizException(ResultEnum.SYSTEM_BUSY));
+            return;
+        }
+        dispatch();
+    }
+
+    private void cancel(Waiter waiter) {
+        if (!waiter.state.compareAndSet(WAITING, CANCELLED)) {
+            return;
+        }
+        synchronized (this) {
+            if (queues.get(waiter.priority).remove(waiter)) {
+                queued--;
+            }
+        }
+    }
+
+    private void finish(Waiter waiter) {
+        // 排队中结束的已在cancel中出队，只有拿到许可的需要归还
+        if (!waiter.state.compareAndSet(GRANTED, FINISHED)) {
+            cancel(waiter);
+            return;
+        }
+        synchronized (this) {
+            running--;
+        }
+        dispatch();
+    }
+
+    /**
+     * 有空闲许可时按权重选出类别、按会话轮询选出调用，在锁外唤醒
+     */
+    private void dispatch() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            while (running < maxConcurrency && queued > 0) {
+                Waiter waiter = pollNext();
+                queued--;
+                if (waiter.state.compareAndSet(WAITING, GRANTED)) {
+                    running++;
+                    granted.add(waiter);
+                }
+            }
+        }
+        long now = System.nanoTime();
+        for (Waiter waiter : granted) {
+            ClassStats stats = queues.get(waiter.priority).stats;
+            stats.recordWait(now - waiter.enqueuedAt);
+            waiter.sink.success();
+        }
+    }
+
+    /**
+     * 平滑加权轮询：每个非空类别累加自身权重，取当前值最大者，被选中的减去总权重
+     */
+    private Waiter pollNext() {
+        ClassQueue selected = null;
+        int totalWeight = 0;
+        for (ClassQueue queue : queues.values()) {
+            if (queue.isEmpty()) {
+                continue;
+            }
+            queue.currentWeight += queue.weight;
+            totalWeight += queue.weight;
+            if (selected == null || queue.currentWeight > selected.currentWeight) {
+                selected = queue;
+            }
+        }
+        selected.currentWeight -= totalWeight;
+        return selected.poll();
+    }
+
+    /**
+     * 一个优先级类别的队列，按会话分组轮询
+     */
+    private static class ClassQueue {
+
+        private final int weight;
+
+        private final long timeout;
+
+        private final ClassStats stats = new ClassStats();
+
+        private final LinkedHashMap<String, ArrayDeque<Waiter>> conversations = new LinkedHashMap<>();
+
+        private int currentWeight;
+
+        ClassQueue(int weight, long timeout) {
+            this.weight = Math.max(1, weight);
+            this.timeout = timeout;
+        }
+
+        boolean isEmpty() {
+            return conversations.isEmpty();
+        }
+
+        void offer(Waiter waiter) {
+            conversations.computeIfAbsent(waiter.conversationKey, key -> new ArrayDeque<>()).offer(waiter);
+            stats.queued.incrementAndGet();
+        }
+
+        /**
+         * 取队首会话的第一个调用，该会话还有排队的调用时移到队尾
+         */
+        Waiter poll() {
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> iterator = conversations.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Waiter>> head = iterator.next();
+            Waiter waiter = head.getValue().poll();
+            iterator.remove();
+            if (!head.getValue().isEmpty()) {
+                conversations.put(head.getKey(), head.getValue());
+            }
+            stats.queued.decrementAndGet();
+            return waiter;
+        }
+
+        boolean remove(Waiter waiter) {
+            ArrayDeque<Waiter> waiters = conversations.get(waiter.conversationKey);
+            if (waiters == null || !waiters.remove(waiter)) {
+                return false;
+            }
+            if (waiters.isEmpty()) {
+                conversations.remove(waiter.conversationKey);
+            }
+            stats.queued.decrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * 一个类别的排队统计
+     */
+    public static class ClassStats {
+
+        private final AtomicInteger queued = new AtomicInteger();
+
+        private final AtomicLong dispatched = new AtomicLong();
+
+        private final AtomicLong expired = new AtomicLong();
+
+        private final AtomicLong rejected = new AtomicLong();
+
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        void recordWait(long nanos) {
+            dispatched.incrementAndGet();
+            totalWaitNanos.addAndGet(nanos);
+            maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public int getQueued() {
+            return queued.get();
+        }
+
+        public long getDispatched() {
+            return dispatched.get();
+        }
+
+        /**
+         * 排队超时放弃的调用数
+         */
+        public long getExpired() {
+            return expired.get();
+        }
+
+        /**
+         * 队列满直接拒绝的调用数
+         */
+        public long getRejected() {
+            return rejected.get();
+        }
+
+        public long getTotalWaitNanos() {
+            return totalWaitNanos.get();
+        }
+
+        public long getMaxWaitNanos() {
+            return maxWaitNanos.get();
+        }
+
+        public double getAverageWaitMillis() {
+            long count = dispatched.get();
+            return count == 0 ? 0 : totalWaitNanos.get() / 1e6 / count;
+        }
+    }
+
+    private static class Waiter {
+
+        private final InvocationPriority priority;
+
+        private final String conversationKey;
+
+        private final long enqueuedAt = System.nanoTime();
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private MonoSink<Void> sink;
+
+        Waiter(InvocationPriority priority, String conversationKey) {
+            this.priority = priority;
+            this.conversationKey = conversationKey;
+        }
+    }
+}
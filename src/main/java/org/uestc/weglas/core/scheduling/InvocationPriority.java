@@ -0,0 +1,26 @@
+package org.uestc.weglas.core.scheduling;
+
+/**
+ * 模型调用的优先级类别
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public enum InvocationPriority {
+
+    /**
+     * 页面上的流式聊天，用户在等待首个chunk
+     */
+    INTERACTIVE_STREAM,
+
+    /**
+     * 同步聊天
+     */
+    SYNC,
+
+    /**
+     * 后台或设备触发的请求，如mqtt桥接
+     */
+    BACKGROUND,
+    ;
+}
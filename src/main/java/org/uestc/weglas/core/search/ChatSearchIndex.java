@@ -0,0 +1,563 @@
+package org.uestc.weglas.core.search;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.cjk.CJKAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.LengthGoalBreakIterator;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.uestc.weglas.base.entity.ConversationChatDetailEntity;
+import org.uestc.weglas.base.mapper.ConversationChatDetailMapper;
+import org.uestc.weglas.biz.dto.ChatSearchHit;
+import org.uestc.weglas.biz.dto.ChatSearchResult;
+import org.uestc.weglas.biz.dto.ConversationSearchHit;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.util.exception.ManagerBizException;
+import org.uestc.weglas.util.log.LogUtil;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.BreakIterator;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 聊天内容全文索引
+ * 本地目录中的lucene索引，聊天落库后增量写入，删除时同步删除；检索按相关度返回命中的聊天和高亮片段，按会话分组。
+ * CJKAnalyzer按二元切分中文，不依赖词典，中英文混合的内容都能检索。
+ * 写入后定期刷新可见，定期提交落盘；索引损坏或与db不一致时可从db全量重建。
+ * 重建期间的增量写入和删除同时记录下来：重建读完db后按顺序重放，避免已删除的聊天被重建读到后复活；
+ * 重建失败回滚时在新的writer上重放，不丢失重建期间的修改。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+@Component
+public class ChatSearchIndex {
+
+    private static final Logger logger = LogManager.getLogger(ChatSearchIndex.class);
+
+    private static final String FIELD_ID = "id";
+
+    private static final String FIELD_CONVERSATION_ID = "conversationId";
+
+    private static final String FIELD_ROLE = "role";
+
+    private static final String FIELD_CONTENT = "content";
+
+    private static final String FIELD_GMT_CREATE = "gmtCreate";
+
+    private static final Set<String> HIT_FIELDS = new HashSet<>(Arrays.asList(FIELD_ID, FIELD_CONVERSATION_ID,
+            FIELD_ROLE, FIELD_GMT_CREATE));
+
+    private static final String HIGHLIGHT_PRE_TAG = "<em>";
+
+    private static final String HIGHLIGHT_POST_TAG = "</em>";
+
+    private static final String ELLIPSIS = "...";
+
+    /**
+     * 内容在倒排中记录偏移量，高亮时不需要重新分词
+     */
+    private static final FieldType CONTENT_TYPE = new FieldType(TextField.TYPE_STORED);
+
+    static {
+        CONTENT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        CONTENT_TYPE.freeze();
+    }
+
+    @Value("${spring.ai.search.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 索引目录
+     */
+    @Value("${spring.ai.search.index-dir:./data/chat-index}")
+    private String indexDir;
+
+    /**
+     * 新写入内容可被检索的最大延迟，单位毫秒
+     */
+    @Value("${spring.ai.search.refresh-interval:1000}")
+    private long refreshInterval;
+
+    /**
+     * 提交落盘间隔，单位毫秒，进程异常退出时最多丢失这段时间的增量，可重建恢复
+     */
+    @Value("${spring.ai.search.commit-interval:30000}")
+    private long commitInterval;
+
+    /**
+     * 启动时索引为空则从db重建
+     */
+    @Value("${spring.ai.search.rebuild-on-empty:true}")
+    private boolean rebuildOnEmpty;
+
+    /**
+     * 单次检索返回的最大聊天数
+     */
+    @Value("${spring.ai.search.max-hits:100}")
+    private int maxHits;
+
+    /**
+     * 高亮片段的目标长度
+     */
+    @Value("${spring.ai.search.snippet-length:120}")
+    private int snippetLength;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    private final Analyzer analyzer = new CJKAnalyzer();
+
+    private Directory directory;
+
+    private volatile IndexWriter writer;
+
+    private volatile SearcherManager searcherManager;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /**
+     * 增量修改持有读锁，替换writer时持有写锁，避免在写入中途关闭writer
+     */
+    private final ReadWriteLock writerLock = new ReentrantReadWriteLock();
+
+    /**
+     * 重建期间的增量修改，按发生顺序
+     */
+    private final Queue<PendingChange> pendingChanges = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong indexed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong searches = new AtomicLong();
+
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    private volatile long lastRebuildMillis;
+
+    private final ScheduledExecutorService maintainer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("chat-index-maintain-%d").setDaemon(true).build());
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            directory = FSDirectory.open(Paths.get(indexDir));
+            open();
+        } catch (IOException e) {
+            // 索引不可用不影响聊天，检索返回失败
+            LogUtil.error(logger, e, "chat index open failed,dir=" + indexDir);
+            return;
+        }
+        maintainer.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        maintainer.scheduleWithFixedDelay(this::commit, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+        if (rebuildOnEmpty && writer.getDocStats().numDocs == 0) {
+            rebuildAsync();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        maintainer.shutdownNow();
+        writerLock.writeLock().lock();
+        try {
+            if (writer == null) {
+                return;
+            }
+            searcherManager.close();
+            // 重建中途关闭时丢弃未完成的重建，保留上次提交的索引
+            if (rebuilding.get()) {
+                writer.rollback();
+            } else {
+                writer.close();
+            }
+            directory.close();
+        } finally {
+            writerLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写入已落库的聊天，id为空的跳过；同一id重复写入时覆盖
+     */
+    public void add(List<ConversationChatDetailEntity> entities) {
+        writerLock.readLock().lock();
+        try {
+            IndexWriter current = writer;
+            if (current == null) {
+                return;
+            }
+            for (ConversationChatDetailEntity entity : entities) {
+                if (entity.getId() == null) {
+                    continue;
+                }
+                try {
+                    apply(current, record(new PendingChange(idTerm(entity.getId()), toDocument(entity))));
+                    indexed.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    // 索引失败不影响聊天写入，可重建恢复
+                    failed.incrementAndGet();
+                    LogUtil.warn(logger, e, "chat index add failed,chatId=" + entity.getId());
+                }
+            }
+        } finally {
+            writerLock.readLock().unlock();
+        }
+    }
+
+    public void delete(Integer chatId) {
+        delete(idTerm(chatId));
+    }
+
+    public void deleteByConversation(Integer conversationId) {
+        delete(new Term(FIELD_CONVERSATION_ID, String.valueOf(conversationId)));
+    }
+
+    /**
+     * 检索聊天内容
+     * 关键词按simple query语法解析：空格分隔的词都要命中，支持 "短语"、-排除、| 或。
+     *
+     * @param keyword        关键词
+     * @param conversationId 只检索该会话，为空时检索全部
+     * @param limit          返回的最大聊天数
+     */
+    public ChatSearchResult search(String keyword, Integer conversationId, int limit) {
+        if (searcherManager == null) {
+            LogUtil.warn(logger, "chat index unavailable,keyword=", keyword);
+            throw new ManagerBizException(ResultEnum.INVOKE_FAIL);
+        }
+        searches.incrementAndGet();
+
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_CONTENT);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        BooleanQuery.Builder builder = new BooleanQuery.Builder()
+                .add(parser.parse(keyword), BooleanClause.Occur.MUST);
+        if (conversationId != null) {
+            builder.add(new TermQuery(new Term(FIELD_CONVERSATION_ID, String.valueOf(conversationId))),
+                    BooleanClause.Occur.FILTER);
+        }
+        Query query = builder.build();
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            TopDocs topDocs = searcher.search(query, Math.max(1, Math.min(limit, maxHits)));
+            String[] snippets = highlighter(searcher).highlight(FIELD_CONTENT, query, topDocs, 1);
+
+            ChatSearchResult result = new ChatSearchResult();
+            result.setTotalHits(topDocs.totalHits.value);
+            Map<Integer, ConversationSearchHit> conversations = new LinkedHashMap<>();
+            for (int i = 0; i < topDocs.scoreDocs.length; i++) {
+                ChatSearchHit hit = toHit(searcher, topDocs.scoreDocs[i], snippets[i]);
+                // 按得分降序遍历，会话第一次出现时的得分即为会话得分
+                conversations.computeIfAbsent(hit.getConversationId(), id -> {
+                    ConversationSearchHit conversation = new ConversationSearchHit();
+                    conversation.setConversationId(id);
+                    conversation.setScore(hit.getScore());
+                    return conversation;
+                }).getChats().add(hit);
+            }
+            result.getConversations().addAll(conversations.values());
+            return result;
+        } catch (IOException e) {
+            throw new ManagerBizException("chat search failed", e);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    /**
+     * 从db全量重建，在后台线程执行
+     * 重建期间不刷新也不提交，检索仍使用重建前的索引，完成后一次切换；失败时回滚到上次提交的索引。
+     *
+     * @return 已有重建在进行或索引不可用时为 {@code false}
+     */
+    public boolean rebuildAsync() {
+        if (writer == null || !rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread rebuilder = new Thread(this::rebuild, "chat-index-rebuild");
+        rebuilder.setDaemon(true);
+        rebuilder.start();
+        return true;
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    public long getIndexed() {
+        return indexed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getSearches() {
+        return searches.get();
+    }
+
+    public long getRebuilds() {
+        return rebuilds.get();
+    }
+
+    public long getLastRebuildMillis() {
+        return lastRebuildMillis;
+    }
+
+    public int getNumDocs() {
+        IndexWriter current = writer;
+        return current == null ? 0 : current.getDocStats().numDocs;
+    }
+
+    private void open() throws IOException {
+        IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        IndexWriter opened = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(opened, null);
+        writer = opened;
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        long count = 0;
+        try {
+            // 先提交之前的增量，失败回滚时只需重放从这里开始记录的修改
+            writerLock.writeLock().lock();
+            try {
+                pendingChanges.clear();
+                writer.commit();
+            } finally {
+                writerLock.writeLock().unlock();
+            }
+            // 流式读取，内存占用与聊天数无关；先执行查询，db不可用时不会清空索引
+            try (SqlSession session = sqlSessionFactory.openSession();
+                 Cursor<ConversationChatDetailEntity> cursor = session
+                         .getMapper(ConversationChatDetailMapper.class).scanByConversationId(null)) {
+                IndexWriter current = writer;
+                current.deleteAll();
+                for (ConversationChatDetailEntity entity : cursor) {
+                    // 重建期间增量写入的聊天可能再次读到，按id覆盖
+                    current.updateDocument(idTerm(entity.getId()), toDocument(entity));
+                    count++;
+                }
+                // 查询开始后删除的聊天可能已被读到，按顺序重放重建期间的修改
+                PendingChange change;
+                while ((change = pendingChanges.poll()) != null) {
+                    apply(current, change);
+                }
+                current.commit();
+            }
+            searcherManager.maybeRefresh();
+            rebuilds.incrementAndGet();
+            lastRebuildMillis = System.currentTimeMillis() - start;
+            LogUtil.info(logger, "chat index rebuilt,chats=", count, ",cost=", lastRebuildMillis, "ms");
+        } catch (IOException | RuntimeException e) {
+            LogUtil.error(logger, e, "chat index rebuild failed,chats=" + count);
+            reopen();
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 丢弃未完成的重建，回到重建开始时提交的索引，再重放重建期间的修改
+     */
+    private void reopen() {
+        writerLock.writeLock().lock();
+        try {
+            SearcherManager old = searcherManager;
+            writer.rollback();
+            writer = null;
+            open();
+            old.close();
+            PendingChange change;
+            while ((change = pendingChanges.poll()) != null) {
+                apply(writer, change);
+            }
+        } catch (IOException | RuntimeException e) {
+            LogUtil.error(logger, e, "chat index reopen failed,dir=" + indexDir);
+        } finally {
+            writerLock.writeLock().unlock();
+        }
+    }
+
+    private void refresh() {
+        if (rebuilding.get()) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            // 异常不能抛出，否则定时任务终止
+            LogUtil.error(logger, e, "chat index refresh failed.");
+        }
+    }
+
+    private void commit() {
+        // 重建中途不能提交，否则崩溃后留下不完整的索引
+        if (rebuilding.get()) {
+            return;
+        }
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException | RuntimeException e) {
+            LogUtil.error(logger, e, "chat index commit failed.");
+        }
+    }
+
+    private void delete(Term term) {
+        writerLock.readLock().lock();
+        try {
+            IndexWriter current = writer;
+            if (current == null) {
+                return;
+            }
+            apply(current, record(new PendingChange(term, null)));
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            LogUtil.warn(logger, e, "chat index delete failed,term=" + term);
+        } finally {
+            writerLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 重建期间先记录再写入，重建重放时不会漏掉
+     */
+    private PendingChange record(PendingChange change) {
+        if (rebuilding.get()) {
+            pendingChanges.add(change);
+        }
+        return change;
+    }
+
+    private static void apply(IndexWriter current, PendingChange change) throws IOException {
+        if (change.document == null) {
+            current.deleteDocuments(change.term);
+        } else {
+            current.updateDocument(change.term, change.document);
+        }
+    }
+
+    private void release(IndexSearcher searcher) {
+        if (searcher == null) {
+            return;
+        }
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            LogUtil.warn(logger, e, "chat index release searcher failed.");
+        }
+    }
+
+    private UnifiedHighlighter highlighter(IndexSearcher searcher) {
+        UnifiedHighlighter highlighter = new UnifiedHighlighter(searcher, analyzer);
+        highlighter.setFormatter(new DefaultPassageFormatter(HIGHLIGHT_PRE_TAG, HIGHLIGHT_POST_TAG, ELLIPSIS, true));
+        // 聊天内容常有很长的句子，按目标长度截取命中位置附近的片段
+        highlighter.setBreakIterator(() -> LengthGoalBreakIterator.createClosestToLength(
+                BreakIterator.getSentenceInstance(Locale.ROOT), snippetLength));
+        return highlighter;
+    }
+
+    private static ChatSearchHit toHit(IndexSearcher searcher, ScoreDoc scoreDoc, String snippet)
+            throws IOException {
+        Document document = searcher.doc(scoreDoc.doc, HIT_FIELDS);
+        ChatSearchHit hit = new ChatSearchHit();
+        hit.setChatId(Integer.valueOf(document.get(FIELD_ID)));
+        hit.setConversationId(Integer.valueOf(document.get(FIELD_CONVERSATION_ID)));
+        hit.setRole(document.get(FIELD_ROLE));
+        hit.setScore(scoreDoc.score);
+        hit.setSnippet(snippet);
+        hit.setGmtCreate(new Date(document.getField(FIELD_GMT_CREATE).numericValue().longValue()));
+        return hit;
+    }
+
+    private static Document toDocument(ConversationChatDetailEntity entity) {
+        Document document = new Document();
+        document.add(new StringField(FIELD_ID, String.valueOf(entity.getId()), Field.Store.YES));
+        document.add(new StringField(FIELD_CONVERSATION_ID, String.valueOf(entity.getConversationId()),
+                Field.Store.YES));
+        document.add(new StoredField(FIELD_ROLE, String.valueOf(entity.getRole())));
+        document.add(new Field(FIELD_CONTENT, entity.getContent() == null ? "" : entity.getContent(),
+                CONTENT_TYPE));
+        // 新写入的聊天由db填写创建时间，entity上为空
+        long gmtCreate = entity.getGmtCreate() == null ? System.currentTimeMillis()
+                : entity.getGmtCreate().getTime();
+        document.add(new StoredField(FIELD_GMT_CREATE, gmtCreate));
+        return document;
+    }
+
+    private static Term idTerm(Integer chatId) {
+        return new Term(FIELD_ID, String.valueOf(chatId));
+    }
+
+    /**
+     * 一次增量修改，document为空时为删除
+     */
+    private static class PendingChange {
+
+        private final Term term;
+
+        private final Document document;
+
+        PendingChange(Term term, Document document) {
+            this.term = term;
+            this.document = document;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.uestc.weglas.core.service;
 
 import org.uestc.weglas.core.model.Conversation;
 import org.uestc.weglas.core.model.ConversationChatDetail;
+import org.uestc.weglas.core.scheduling.InvocationPriority;
 import reactor.core.publisher.Flux;
 
 /**
@@ -25,5 +26,16 @@ public interface ChatService {
      * @param chat
      * @return
      */
-    Flux<String> streamChat(Conversation conversation, ConversationChatDetail chat);
+    default Flux<String> streamChat(Conversation conversation, ConversationChatDetail chat) {
+        return streamChat(conversation, chat, InvocationPriority.INTERACTIVE_STREAM);
+    }
+
+    /**
+     * 按指定优先级排队的流式输出
+     *
+     * @param conversation 历史会话
+     * @param chat         用户输入chat
+     * @param priority     模型调用的排队优先级
+     */
+    Flux<String> streamChat(Conversation conversation, ConversationChatDetail chat, InvocationPriority priority);
 }
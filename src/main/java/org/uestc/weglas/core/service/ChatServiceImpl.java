@@ -1,35 +1,50 @@
 package org.uestc.weglas.core.service;
 
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.TypeReference;
+import com.google.common.util.concurrent.RateLimiter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.uestc.weglas.core.admission.ChatAdmission;
+import org.uestc.weglas.core.builder.ChatPayloadBuilder;
 import org.uestc.weglas.core.builder.ConversationChatBuilder;
+import org.uestc.weglas.core.cache.ChatResponseCache;
+import org.uestc.weglas.core.context.ChatContextAssembler;
+import org.uestc.weglas.core.context.TokenEstimator;
+import org.uestc.weglas.core.enums.ChatStatusEnum;
 import org.uestc.weglas.core.enums.ResultEnum;
 import org.uestc.weglas.core.model.Conversation;
+import org.uestc.weglas.core.metrics.ChatMetrics;
 import org.uestc.weglas.core.model.ConversationChatDetail;
-import org.uestc.weglas.util.exception.AssertUtil;
+import org.uestc.weglas.core.router.LlmBackend;
+import org.uestc.weglas.core.router.LlmRouter;
+import org.uestc.weglas.core.scheduling.ChatInvocationScheduler;
+import org.uestc.weglas.core.scheduling.InvocationPriority;
+import org.uestc.weglas.core.stream.StreamChatAccumulator;
 import org.uestc.weglas.util.exception.ManagerBizException;
 import org.uestc.weglas.util.log.LogUtil;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.uestc.weglas.core.model.BizConstants.CHAT_EXT_STATUS;
+import static org.uestc.weglas.core.model.BizConstants.STREAM_CHAT_BUFFER_SIZE;
+import static org.uestc.weglas.core.model.BizConstants.STREAM_CHAT_PREFETCH;
 
 /**
  * @author yingxian.cyx
@@ -41,17 +56,54 @@ import java.util.Map;
 public class ChatServiceImpl implements ChatService {
 
     private final Logger logger = LogManager.getLogger(ChatServiceImpl.class);
-    private final WebClient webClient = WebClient.builder().build();
 
-    @Value("${spring.ai.chat-url}")
-    private String aiChatURL;
+    @Autowired
+    private WebClient aiWebClient;
+
+    @Autowired
+    private LlmRouter llmRouter;
 
-    @Value("${spring.ai.stream-chat-url}")
-    private String aiStreamChatURL;
+    /**
+     * 同步聊天等待响应的最大时间，单位毫秒
+     */
+    @Value("${spring.ai.http.response-timeout:120000}")
+    private long responseTimeout;
+
+    /**
+     * chunk日志每秒最多输出条数，仅debug级别生效
+     */
+    @Value("${spring.ai.log.chunk-log-rate:5}")
+    private double chunkLogRate;
+
+    private RateLimiter chunkLogLimiter;
 
     @Autowired
     private ConversationService conversationService;
 
+    @Autowired
+    private ChatContextAssembler chatContextAssembler;
+
+    @Autowired
+    private ChatResponseCache chatResponseCache;
+
+    @Autowired
+    private ChatInvocationScheduler invocationScheduler;
+
+    @Autowired
+    private ChatMetrics chatMetrics;
+
+    @Autowired
+    private TokenEstimator tokenEstimator;
+
+    @Autowired
+    @Qualifier("dbScheduler")
+    private Scheduler dbScheduler;
+
+    @PostConstruct
+    public void init() {
+        chunkLogLimiter = RateLimiter.create(chunkLogRate);
+    }
+
     /**
      * @param conversation 历史会话
      * @param currentChat
@@ -60,10 +112,33 @@ public class ChatServiceImpl implements ChatService {
     @Override
     public ConversationChatDetail chat(Conversation conversation, ConversationChatDetail currentChat) {
 
-        ResponseEntity<String> response = new RestTemplate().postForEntity(aiChatURL,
-                buildRequest(conversation, currentChat), String.class);
+        List<ConversationChatDetail> history = chatContextAssembler.assemble(conversation, currentChat);
+        Map<String, Object> payload = ChatPayloadBuilder.buildPayload(currentChat, history);
+
+        // 相同模型、输入和上下文直接复用回答，并发的相同请求合并为一次调用
+        String response = chatResponseCache.get(conversation.getLlmModel(), currentChat.getContent(), history,
+                () -> ChatPayloadBuilder.parseResponse(blockChat(conversation, payload)));
+
+        return ConversationChatBuilder.buildAssistantChat(conversation, response);
+    }
 
-        return ConversationChatBuilder.buildAssistantChat(conversation, parseResponse(response));
+    private String blockChat(Conversation conversation, Map<String, Object> payload) {
+        // 获得调用许可后才开始计时，排队时间计入样本会使准入上限随排队加长而不断收缩
+        AtomicLong upstreamNanos = new AtomicLong(-1);
+        Mono<String> call = Mono.defer(() -> {
+            long start = System.nanoTime();
+            return requestChat(conversation.getLlmModel(), payload)
+                    .doOnSuccess(response -> upstreamNanos.set(System.nanoTime() - start));
+        });
+        // 缓存未命中才排队调用模型
+        String response = invocationScheduler.schedule(InvocationPriority.SYNC, conversation.getId(), call)
+                // 整体超时兜底，包含排队时间，后端超时一般更早触发
+                .timeout(Duration.ofMillis(responseTimeout))
+                .onErrorMap(TimeoutException.class, e -> new ManagerBizException(ResultEnum.INVOKE_TIMEOUT))
+                .block();
+        // 只有实际调用模型的耗时作为准入并发限制的样本，缓存命中不计
+        ChatAdmission.recordUpstreamLatency(upstreamNanos.get());
+        return response;
     }
 
     /**
@@ -71,68 +146,174 @@ public class ChatServiceImpl implements ChatService {
      *
      * @param conversation 会话
      * @param userChat     用户输入chat
+     * @param priority     模型调用的排队优先级
      * @return 流式返回文本
      */
     @Override
-    public Flux<String> streamChat(Conversation conversation, ConversationChatDetail userChat) {
+    public Flux<String> streamChat(Conversation conversation, ConversationChatDetail userChat,
+                                   InvocationPriority priority) {
 
-        Map<String, Object> payload = buildPayload(conversation, userChat);
-        StringBuilder completeResponse = new StringBuilder();
+        Map<String, Object> payload = ChatPayloadBuilder.buildPayload(userChat,
+                chatContextAssembler.assemble(conversation, userChat));
+        StreamChatAccumulator accumulator = new StreamChatAccumulator(STREAM_CHAT_BUFFER_SIZE);
+        AtomicLong subscribedAt = new AtomicLong();
+        AtomicLong firstChunkAt = new AtomicLong();
 
-        return this.webClient.post()
-                .uri(aiStreamChatURL)
-                .body(Mono.just(payload), Map.class)
-                .retrieve()
-                .bodyToFlux(String.class)
+        // 排队获得调用许可后才选择后端发起请求，流结束或取消时归还
+        return invocationScheduler.schedule(priority, conversation.getId(),
+                        Flux.defer(() -> requestStream(conversation.getLlmModel(), payload)))
+                .doOnSubscribe(subscription -> subscribedAt.set(System.nanoTime()))
+                // 直接从DataBuffer解码并立即释放，避免DataBuffer在后续队列中滞留
+                .map(accumulator::decode)
+                // 上游结束时末尾不完整的utf-8字节解码后作为最后一个chunk，与落库内容一致
+                .concatWith(Mono.fromCallable(accumulator::markUpstreamCompleted))
+                .filter(responseChunk -> !responseChunk.isEmpty())
+                // 按下游消费速度分批向上游请求
+                .limitRate(STREAM_CHAT_PREFETCH)
                 .doOnNext(responseChunk -> {
-                    onNext(responseChunk, completeResponse);
+                    // 首个chunk的延迟包含排队时间，即用户实际等待的时间
+                    long now = System.nanoTime();
+                    if (firstChunkAt.compareAndSet(0, now)) {
+                        chatMetrics.recordTimeToFirstToken(conversation.getLlmModel(), now - subscribedAt.get());
+                    }
+                    onNext(responseChunk, accumulator);
                 })
-                .doOnComplete(() -> {
-                    onComplete(conversation, completeResponse);
-                });
+                .doOnComplete(() -> recordStreamOutput(conversation, accumulator, firstChunkAt.get()))
+                // 流结束后在db调度器上保存完整响应，不阻塞netty事件循环
+                .concatWith(Mono.<String>fromRunnable(() -> onFinish(conversation, accumulator, ChatStatusEnum.COMPLETED))
+                        .subscribeOn(dbScheduler))
+                .doOnError(e -> finishAsync(conversation, accumulator, ChatStatusEnum.FAILED))
+                // 客户端断开时取消订阅会一并取消上游请求，已生成的部分标记为中止后保存
+                .doOnCancel(() -> finishAsync(conversation, accumulator,
+                        accumulator.isUpstreamCompleted() ? ChatStatusEnum.COMPLETED : ChatStatusEnum.ABORTED));
     }
 
-    private void onComplete(Conversation conversation, StringBuilder completeResponse) {
-        // 流式响应完成时，保存完整的响应到数据库
-        String finalResponse = completeResponse.toString();
-
-        LogUtil.info(logger, "Complete response: " + finalResponse);
-        ConversationChatDetail assistantChat = ConversationChatBuilder.buildAssistantChat(conversation, finalResponse);
+    /**
+     * 同步聊天请求。开启对冲时，主请求超过后端的分位数延迟仍未返回则向另一后端再发一次，
+     * 取先成功的结果，落败的请求被取消。
+     */
+    private Mono<String> requestChat(String llmModel, Map<String, Object> payload) {
+        return Mono.defer(() -> {
+            LlmBackend primary = llmRouter.acquire(llmModel);
+            Mono<String> primaryCall = callBackend(primary, payload);
+            long hedgeDelay = llmRouter.hedgeDelay(primary);
+            if (hedgeDelay < 0) {
+                return primaryCall;
+            }
+            Mono<String> hedgeCall = Mono.delay(Duration.ofMillis(hedgeDelay))
+                    .flatMap(tick -> {
+                        LlmBackend backup = llmRouter.acquireHedge(llmModel, primary);
+                        if (backup == null) {
+                            return Mono.empty();
+                        }
+                        return callBackend(backup, payload).doOnNext(response -> llmRouter.recordHedgeWin());
+                    });
+            // 一方失败时等待另一方，都失败才返回错误
+            return Flux.mergeDelayError(1, primaryCall, hedgeCall).next();
+        });
+    }
 
-        // 写入助手生成的chat
-        conversationService.addChat(assistantChat);
+    private Mono<String> callBackend(LlmBackend backend, Map<String, Object> payload) {
+        long start = System.nanoTime();
+        return this.aiWebClient.post()
+                .uri(backend.getChatUrl())
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(payload)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofMillis(backend.getTimeout()))
+                .doOnSuccess(response -> {
+                    long nanos = System.nanoTime() - start;
+                    llmRouter.recordLatency(backend, nanos);
+                    chatMetrics.recordUpstreamLatency(backend, ChatMetrics.TYPE_CHAT, nanos);
+                })
+                // 失败、超时和对冲落败被取消的请求也计入分位数，否则慢请求被排除在外
+                .doOnError(e -> llmRouter.recordFailedLatency(backend, System.nanoTime() - start))
+                .doOnCancel(() -> llmRouter.recordFailedLatency(backend, System.nanoTime() - start))
+                .onErrorMap(TimeoutException.class, e -> {
+                    llmRouter.recordTimeout(backend);
+                    return new ManagerBizException(ResultEnum.INVOKE_TIMEOUT);
+                })
+                .doFinally(signal -> llmRouter.release(backend, signal));
     }
 
-    private void onNext(String responseChunk, StringBuilder completeResponse) {
-        completeResponse.append(responseChunk);
-        LogUtil.info(logger, "Received chunk: " + responseChunk);
+    /**
+     * 选择后端发起流式请求，流结束、出错或取消时归还后端许可
+     */
+    private Flux<DataBuffer> requestStream(String llmModel, Map<String, Object> payload) {
+        LlmBackend backend = llmRouter.acquire(llmModel);
+        long start = System.nanoTime();
+        AtomicBoolean firstChunk = new AtomicBoolean(true);
+        return this.aiWebClient.post()
+                .uri(backend.getStreamChatUrl())
+                .body(Mono.just(payload), Map.class)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                // 首个chunk有单独的超时，之后的chunk间隔由连接的读超时控制
+                .timeout(Mono.delay(Duration.ofMillis(backend.getFirstChunkTimeout())), buffer -> Mono.never())
+                .doOnNext(buffer -> {
+                    // 流式请求以首个chunk的延迟衡量后端负载
+                    if (firstChunk.compareAndSet(true, false)) {
+                        long nanos = System.nanoTime() - start;
+                        llmRouter.recordLatency(backend, nanos);
+                        chatMetrics.recordUpstreamLatency(backend, ChatMetrics.TYPE_STREAM, nanos);
+                    }
+                })
+                .doOnError(e -> {
+                    // 首个chunk之前失败或超时，同样计入分位数
+                    if (firstChunk.compareAndSet(true, false)) {
+                        llmRouter.recordFailedLatency(backend, System.nanoTime() - start);
+                    }
+                })
+                .onErrorMap(TimeoutException.class, e -> {
+                    llmRouter.recordTimeout(backend);
+                    return new ManagerBizException(ResultEnum.INVOKE_TIMEOUT);
+                })
+                .doFinally(signal -> llmRouter.release(backend, signal));
     }
 
-    private HttpEntity<Map<String, Object>> buildRequest(Conversation conversation, ConversationChatDetail currentChat) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+    /**
+     * 记录输出token数和输出速度，token数按估算
+     */
+    private void recordStreamOutput(Conversation conversation, StreamChatAccumulator accumulator, long firstChunkAt) {
+        if (firstChunkAt == 0) {
+            return;
+        }
+        int tokens = tokenEstimator.estimate(conversation.getLlmModel(), accumulator.content());
+        chatMetrics.recordStreamOutput(conversation.getLlmModel(), tokens, System.nanoTime() - firstChunkAt);
+    }
 
-        return new HttpEntity<>(buildPayload(conversation, currentChat), headers);
+    private void finishAsync(Conversation conversation, StreamChatAccumulator accumulator, ChatStatusEnum status) {
+        try {
+            dbScheduler.schedule(() -> onFinish(conversation, accumulator, status));
+        } catch (RuntimeException e) {
+            LogUtil.error(logger, e, "stream chat finish schedule failed,conversationId=" + conversation.getId());
+        }
     }
 
-    private Map<String, Object> buildPayload(Conversation conversation, ConversationChatDetail currentChat) {
-        Map<String, Object> requestPayload = new HashMap<>();
-        requestPayload.put("message", currentChat.getContent());
-        requestPayload.put("historyMessages", conversation.getChatList());
-        return requestPayload;
+    private void onFinish(Conversation conversation, StreamChatAccumulator accumulator, ChatStatusEnum status) {
+        if (!accumulator.finish()) {
+            return;
+        }
+        // 流式响应结束时，保存完整或部分响应到数据库
+        String finalResponse = accumulator.content();
+
+        LogUtil.info(logger, "Complete response,conversationId=" + conversation.getId() + ",status="
+                + status.getCode() + ",chunks=" + accumulator.getChunkCount() + ",length=" + finalResponse.length());
+        if (logger.isDebugEnabled()) {
+            LogUtil.debug(logger, "Complete response: " + finalResponse);
+        }
+        ConversationChatDetail assistantChat = ConversationChatBuilder.buildAssistantChat(conversation, finalResponse);
+        assistantChat.getExt().put(CHAT_EXT_STATUS, status.getCode());
+
+        // 写入助手生成的chat
+        conversationService.addChat(assistantChat);
     }
 
-    private String parseResponse(ResponseEntity<String> entity) {
-        try {
-            String json = entity.getBody();
-            Map<String, String> map = JSON.parseObject(json, new TypeReference<Map<String, String>>() {
-            });
-            AssertUtil.notNull(map);
-            String response = URLDecoder.decode(map.getOrDefault("response", ""), StandardCharsets.UTF_8.name());
-            AssertUtil.notBlank(response);
-            return response;
-        } catch (UnsupportedEncodingException e) {
-            throw new ManagerBizException(ResultEnum.INVOKE_FAIL);
+    private void onNext(String responseChunk, StreamChatAccumulator accumulator) {
+        // chunk已在decode时累积，这里只做限速采样的debug日志
+        if (logger.isDebugEnabled() && chunkLogLimiter.tryAcquire()) {
+            LogUtil.debug(logger, "Received chunk,chunks=" + accumulator.getChunkCount() + ",chunk=" + responseChunk);
         }
     }
 }
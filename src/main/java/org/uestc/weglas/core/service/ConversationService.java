@@ -1,8 +1,11 @@
 package org.uestc.weglas.core.service;
 
+import org.uestc.weglas.biz.dto.ConversationQuery;
+import org.uestc.weglas.biz.dto.CursorPage;
 import org.uestc.weglas.core.model.Conversation;
 import org.uestc.weglas.core.model.ConversationChatDetail;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -28,14 +31,64 @@ public interface ConversationService {
      */
     Conversation queryById(Integer conversationId);
 
+    /**
+     * 获取设备绑定的会话，不存在时新建
+     *
+     * @param deviceId 设备id
+     * @param llmModel 新建会话使用的模型
+     * @return 会话基本信息，不含聊天记录
+     */
+    Conversation queryOrCreateByDevice(String deviceId, String llmModel);
+
+    /**
+     * 获取会话详情，只加载最近的若干条聊天
+     *
+     * @param conversationId key值
+     * @param windowSize     加载的聊天条数
+     * @return 返回结果，chatList按时间正序
+     */
+    Conversation queryRecentById(Integer conversationId, int windowSize);
+
+    /**
+     * 向前分页加载聊天记录
+     *
+     * @param conversationId 会话id
+     * @param cursor         上一页返回的nextCursor，为空时从最新一条开始
+     * @param pageSize       分页大小
+     * @return 分页结果，values按时间正序
+     */
+    CursorPage<ConversationChatDetail> queryChatPage(Integer conversationId, String cursor, int pageSize);
+
+    /**
+     * 加载指定聊天之前的聊天，按 (gmt_create, id) 游标查询
+     *
+     * @param chat          游标聊天，需要有id和创建时间，结果不含该聊天
+     * @param fromGmtCreate 下界的创建时间，结果包含下界位置的聊天，为空时不限制
+     * @param fromId        下界的id
+     * @param limit         最多条数，取离游标最近的部分
+     * @return 按时间正序
+     */
+    List<ConversationChatDetail> queryChatsBefore(ConversationChatDetail chat, Date fromGmtCreate, Integer fromId,
+                                                  int limit);
+
 
     /**
      * 获取列表
      *
      * @return 返回结果
+     * @deprecated 全表扫描，使用 {@link #queryPage(ConversationQuery)}
      */
+    @Deprecated
     List<Conversation> queryAll();
 
+    /**
+     * 游标分页获取列表，不返回ext
+     *
+     * @param query 查询条件，使用 cursor/pageSize
+     * @return 分页结果
+     */
+    CursorPage<Conversation> queryPage(ConversationQuery query);
+
 
     /**
      * 删除会话
@@ -53,6 +106,13 @@ public interface ConversationService {
      */
     void addChat( ConversationChatDetail chat);
 
+    /**
+     * 按顺序新增多条聊天，与其他请求合并批量写入
+     *
+     * @param chats 聊天列表
+     */
+    void addChats(List<ConversationChatDetail> chats);
+
     /**
      * 删除聊天
      *
@@ -1,19 +1,51 @@
 package org.uestc.weglas.core.service;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.uestc.weglas.base.entity.ConversationChatDetailEntity;
 import org.uestc.weglas.base.entity.ConversationEntity;
 import org.uestc.weglas.base.mapper.ConversationChatDetailMapper;
 import org.uestc.weglas.base.mapper.ConversationMapper;
+import org.uestc.weglas.base.writer.ChatBatchWriter;
+import org.uestc.weglas.biz.dto.ConversationCursor;
+import org.uestc.weglas.biz.dto.ConversationQuery;
+import org.uestc.weglas.biz.dto.CursorPage;
+import org.uestc.weglas.core.cache.ChatTail;
+import org.uestc.weglas.core.cache.ConversationCache;
 import org.uestc.weglas.core.converter.ConversationChatDetailConverter;
 import org.uestc.weglas.core.converter.ConversationConverter;
+import org.uestc.weglas.core.enums.ResultEnum;
+import org.uestc.weglas.core.memory.ChatMemory;
 import org.uestc.weglas.core.model.Conversation;
 import org.uestc.weglas.core.model.ConversationChatDetail;
+import org.uestc.weglas.core.search.ChatSearchIndex;
+import org.uestc.weglas.util.exception.AssertUtil;
+import org.uestc.weglas.util.exception.ManagerBizException;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.uestc.weglas.core.model.BizConstants.CHAT_MAX_PAGE_SIZE;
+import static org.uestc.weglas.core.model.BizConstants.CHAT_PAGE_SIZE;
+import static org.uestc.weglas.core.model.BizConstants.CONVERSATION_MAX_PAGE_SIZE;
+import static org.uestc.weglas.core.model.BizConstants.CONVERSATION_PAGE_SIZE;
+import static org.uestc.weglas.core.model.BizConstants.DEVICE_CONVERSATION_TITLE_PREFIX;
 
 /**
  * @author yingxian.cyx
@@ -29,6 +61,49 @@ public class ConversationServiceImpl implements ConversationService {
     @Autowired
     private ConversationChatDetailMapper conversationChatDetailMapper;
 
+    @Autowired
+    private ChatBatchWriter chatBatchWriter;
+
+    @Autowired
+    private ConversationCache conversationCache;
+
+    @Autowired
+    private ChatSearchIndex chatSearchIndex;
+
+    @Autowired
+    private ChatMemory chatMemory;
+
+    /**
+     * 缓存的最近聊天条数
+     */
+    @Value("${spring.ai.cache.chat-tail-size:50}")
+    private int chatTailSize;
+
+    /**
+     * 落库后写入检索索引和语义记忆的任务排队上限，超出后由提交线程执行
+     */
+    @Value("${spring.ai.chat-writer.index-queue-capacity:10000}")
+    private int indexQueueCapacity;
+
+    /**
+     * 检索索引和语义记忆的增删，单线程保证同一条聊天先增后删的顺序，不占用刷盘线程和请求线程
+     */
+    private ThreadPoolExecutor indexExecutor;
+
+    @PostConstruct
+    public void init() {
+        indexExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(indexQueueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("chat-index-writer-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        indexExecutor.shutdown();
+        indexExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
     @Override
     @Transactional
     public void add(Conversation conversation) {
@@ -53,6 +128,63 @@ public class ConversationServiceImpl implements ConversationService {
     }
 
     @Override
+    public Conversation queryOrCreateByDevice(String deviceId, String llmModel) {
+        AssertUtil.notBlank(deviceId);
+        ConversationEntity entity = conversationMapper.selectByDeviceId(deviceId);
+        if (entity != null) {
+            return ConversationConverter.convert(entity);
+        }
+
+        Conversation conversation = new Conversation();
+        conversation.setTitle(DEVICE_CONVERSATION_TITLE_PREFIX + deviceId);
+        conversation.setLlmModel(llmModel);
+        conversation.setDeviceId(deviceId);
+        try {
+            add(conversation);
+            return conversation;
+        } catch (DuplicateKeyException e) {
+            // 并发创建，以先创建的为准
+            return ConversationConverter.convert(conversationMapper.selectByDeviceId(deviceId));
+        }
+    }
+
+    @Override
+    public Conversation queryRecentById(Integer conversationId, int windowSize) {
+        Conversation basicConversation = queryHeader(conversationId);
+        basicConversation.setChatList(queryChatTail(conversationId, windowSize));
+        return basicConversation;
+    }
+
+    @Override
+    public CursorPage<ConversationChatDetail> queryChatPage(Integer conversationId, String cursor, int pageSize) {
+        AssertUtil.notNull(conversationId);
+        int size = pageSize <= 0 ? CHAT_PAGE_SIZE : Math.min(pageSize, CHAT_MAX_PAGE_SIZE);
+
+        ConversationChatDetailEntity cursorChat = null;
+        if (StringUtils.isNotBlank(cursor)) {
+            try {
+                cursorChat = conversationChatDetailMapper.selectById(Integer.valueOf(cursor));
+            } catch (NumberFormatException e) {
+                throw new ManagerBizException(ResultEnum.PARAMETER_ILLEGAL);
+            }
+            AssertUtil.notNull(cursorChat);
+            AssertUtil.isTrue(conversationId.equals(cursorChat.getConversationId()));
+        }
+        return loadChatWindow(conversationId, cursorChat, size);
+    }
+
+    @Override
+    public List<ConversationChatDetail> queryChatsBefore(ConversationChatDetail chat, Date fromGmtCreate,
+                                                         Integer fromId, int limit) {
+        List<ConversationChatDetail> chats = ConversationChatDetailConverter.convert(
+                conversationChatDetailMapper.selectRangeByConversationId(chat.getConversationId(),
+                        chat.getGmtCreate(), chat.getId(), fromGmtCreate, fromId, limit));
+        Collections.reverse(chats);
+        return chats;
+    }
+
+    @Override
+    @Deprecated
     public List<Conversation> queryAll() {
 
         List<ConversationEntity> conversationEntities = conversationMapper.selectAll();
@@ -60,28 +192,150 @@ public class ConversationServiceImpl implements ConversationService {
         return ConversationConverter.convert(conversationEntities);
     }
 
+    @Override
+    public CursorPage<Conversation> queryPage(ConversationQuery query) {
+        int pageSize = query.getPageSize() <= 0 ? CONVERSATION_PAGE_SIZE
+                : Math.min(query.getPageSize(), CONVERSATION_MAX_PAGE_SIZE);
+        ConversationCursor cursor = ConversationCursor.decode(query.getCursor());
+
+        // 多查一条用于判断是否还有下一页
+        List<ConversationEntity> entities = cursor == null
+                ? conversationMapper.selectPageByCursor(null, null, pageSize + 1)
+                : conversationMapper.selectPageByCursor(cursor.getGmtModified(), cursor.getId(), pageSize + 1);
+
+        CursorPage<Conversation> page = new CursorPage<>();
+        page.setHasMore(entities.size() > pageSize);
+        List<Conversation> conversations = ConversationConverter.convert(
+                page.isHasMore() ? entities.subList(0, pageSize) : entities);
+        page.setValues(conversations);
+        if (page.isHasMore()) {
+            Conversation last = conversations.get(conversations.size() - 1);
+            page.setNextCursor(new ConversationCursor(last.getGmtModified(), last.getId()).encode());
+        }
+        return page;
+    }
+
     @Override
     public void remove(Integer conversationId) {
         conversationMapper.deleteById(conversationId);
+        conversationCache.invalidate(conversationId);
+        indexExecutor.execute(() -> {
+            chatSearchIndex.deleteByConversation(conversationId);
+            chatMemory.deleteByConversation(conversationId);
+        });
     }
 
     @Override
-    @Transactional
     public void addChat(ConversationChatDetail chat) {
-        conversationMapper.updateGmtModifiedById(chat.getConversationId());
-        doAddChat(chat);
+        addChats(Collections.singletonList(chat));
+    }
+
+    @Override
+    public void addChats(List<ConversationChatDetail> chats) {
+        List<ConversationChatDetailEntity> entities = new ArrayList<>(chats.size());
+        for (ConversationChatDetail chat : chats) {
+            entities.add(ConversationChatDetailConverter.convert(chat));
+        }
+        Set<Integer> conversationIds = new LinkedHashSet<>();
+        for (ConversationChatDetail chat : chats) {
+            conversationIds.add(chat.getConversationId());
+        }
+
+        CompletableFuture<Void> written = chatBatchWriter.write(entities);
+        // 先注册回调再等待，GROUP_COMMIT等待超时后聊天仍会落库，回调照常执行
+        // 落库回填id后写入检索索引和语义记忆
+        written.thenRunAsync(() -> {
+            chatSearchIndex.add(entities);
+            chatMemory.add(entities);
+        }, indexExecutor);
+        // 异步落库的情况，落库完成后再失效一次，清掉落库前被重新加载的旧窗口
+        if (!written.isDone()) {
+            written.whenCompleteAsync((result, e) -> invalidate(conversationIds), indexExecutor);
+        }
+        invalidate(conversationIds);
+        chatBatchWriter.await(written);
+
+        // WRITE_BEHIND模式下此时可能尚未落库，id为空，见 ChatWriteMode#WRITE_BEHIND
+        for (int i = 0; i < chats.size(); i++) {
+            chats.get(i).setId(entities.get(i).getId());
+        }
     }
 
     @Override
     public void removeChat(Integer chatId) {
+        ConversationChatDetailEntity entity = conversationChatDetailMapper.selectById(chatId);
+        if (entity == null) {
+            return;
+        }
         conversationChatDetailMapper.deleteById(chatId);
+        conversationCache.invalidate(entity.getConversationId());
+        // 与落库后的写入走同一线程，不会被排在后面的写入覆盖
+        indexExecutor.execute(() -> {
+            chatSearchIndex.delete(chatId);
+            chatMemory.delete(chatId);
+        });
+    }
+
+
+    private Conversation queryHeader(Integer conversationId) {
+        Conversation cached = conversationCache.getHeader(conversationId);
+        if (cached != null) {
+            return cached;
+        }
+        ConversationEntity conversationEntity = conversationMapper.selectById(conversationId);
+        AssertUtil.notNull(conversationEntity);
+        Conversation basicConversation = ConversationConverter.convert(conversationEntity);
+        conversationCache.putHeader(basicConversation);
+        return basicConversation;
+    }
+
+    /**
+     * 窗口不超过缓存的最近聊天条数时走缓存，缓存按固定大小加载，不同窗口大小共用
+     */
+    private List<ConversationChatDetail> queryChatTail(Integer conversationId, int windowSize) {
+        if (windowSize > chatTailSize) {
+            return loadChatWindow(conversationId, null, windowSize).getValues();
+        }
+
+        ChatTail tail = conversationCache.getTail(conversationId);
+        if (tail == null || (tail.getChats().size() < windowSize && tail.isHasMore())) {
+            // 先取版本再查db，查询期间有写入时不缓存
+            ConversationCache.TailVersion version = conversationCache.tailVersion(conversationId);
+            CursorPage<ConversationChatDetail> page = loadChatWindow(conversationId, null, chatTailSize);
+            tail = new ChatTail(page.getValues(), page.isHasMore());
+            conversationCache.putTail(conversationId, tail, version);
+        }
+        List<ConversationChatDetail> chats = tail.getChats();
+        return new ArrayList<>(chats.subList(Math.max(0, chats.size() - windowSize), chats.size()));
+    }
+
+    private void invalidate(Set<Integer> conversationIds) {
+        for (Integer conversationId : conversationIds) {
+            conversationCache.invalidate(conversationId);
+        }
     }
 
+    /**
+     * 按 (gmt_create, id) 游标倒序取一页，再翻转为正序返回
+     */
+    private CursorPage<ConversationChatDetail> loadChatWindow(Integer conversationId,
+                                                              ConversationChatDetailEntity cursorChat, int size) {
+        // 多查一条用于判断是否还有更早的聊天
+        List<ConversationChatDetailEntity> entities = cursorChat == null
+                ? conversationChatDetailMapper.selectRecentByConversationId(conversationId, null, null, size + 1)
+                : conversationChatDetailMapper.selectRecentByConversationId(conversationId,
+                cursorChat.getGmtCreate(), cursorChat.getId(), size + 1);
 
-    private void doAddChat(ConversationChatDetail chat) {
-        ConversationChatDetailEntity entity = ConversationChatDetailConverter.convert(chat);
-        conversationChatDetailMapper.insert(entity);
-        chat.setId(entity.getId());
+        CursorPage<ConversationChatDetail> page = new CursorPage<>();
+        page.setHasMore(entities.size() > size);
+        List<ConversationChatDetail> chats = ConversationChatDetailConverter.convert(
+                page.isHasMore() ? entities.subList(0, size) : entities);
+        Collections.reverse(chats);
+        page.setValues(chats);
+        if (page.isHasMore()) {
+            page.setNextCursor(String.valueOf(chats.get(0).getId()));
+        }
+        return page;
     }
 
 }
@@ -0,0 +1,128 @@
+package org.uestc.weglas.core.stream;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 流式聊天的响应累积
+ * 直接从DataBuffer解码到复用的字符缓冲区，再追加到预分配的StringBuilder，
+ * 每个chunk只产生一个发给下游的String；跨chunk的不完整utf-8字符留到下一个chunk解码。
+ * chunk在netty线程追加，取消回调可能在其他线程读取，因此方法加锁。
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class StreamChatAccumulator {
+
+    private final StringBuilder buffer;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * 复用的解码输出缓冲区，不够时扩容
+     */
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    /**
+     * 上一个chunk末尾未解码完的字节
+     */
+    private ByteBuffer pending;
+
+    private int chunkCount;
+
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    private volatile boolean upstreamCompleted;
+
+    public StreamChatAccumulator(int initialCapacity) {
+        this.buffer = new StringBuilder(initialCapacity);
+    }
+
+    /**
+     * 解码并累积一个chunk，同时释放DataBuffer
+     *
+     * @param dataBuffer 上游chunk
+     * @return 本次解码出的文本
+     */
+    public synchronized String decode(DataBuffer dataBuffer) {
+        try {
+            ByteBuffer input = dataBuffer.asByteBuffer();
+            if (pending != null) {
+                ByteBuffer merged = ByteBuffer.allocate(pending.remaining() + input.remaining());
+                merged.put(pending).put(input).flip();
+                input = merged;
+                pending = null;
+            }
+
+            int start = buffer.length();
+            decodeInto(input, false);
+            if (input.hasRemaining()) {
+                pending = ByteBuffer.allocate(input.remaining());
+                pending.put(input).flip();
+            }
+            chunkCount++;
+            return buffer.substring(start);
+        } finally {
+            DataBufferUtils.release(dataBuffer);
+        }
+    }
+
+    public synchronized String content() {
+        return buffer.toString();
+    }
+
+    public synchronized int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * 上游结束，剩余不完整的字节按替换字符写入
+     *
+     * @return 剩余字节解码出的文本，需要作为最后一个chunk发给下游，没有剩余时为空串
+     */
+    public synchronized String markUpstreamCompleted() {
+        int start = buffer.length();
+        ByteBuffer input = pending == null ? ByteBuffer.allocate(0) : pending;
+        pending = null;
+        decodeInto(input, true);
+        chars.clear();
+        decoder.flush(chars);
+        appendChars();
+        upstreamCompleted = true;
+        return buffer.substring(start);
+    }
+
+    public boolean isUpstreamCompleted() {
+        return upstreamCompleted;
+    }
+
+    /**
+     * 完成、取消、异常可能并发触发，只有第一次调用返回true，保证只落库一次
+     */
+    public boolean finish() {
+        return finished.compareAndSet(false, true);
+    }
+
+    private void decodeInto(ByteBuffer input, boolean endOfInput) {
+        int required = (int) (input.remaining() * (double) decoder.maxCharsPerByte()) + 1;
+        if (chars.capacity() < required) {
+            chars = CharBuffer.allocate(Math.max(required, chars.capacity() * 2));
+        }
+        chars.clear();
+        decoder.decode(input, chars, endOfInput);
+        appendChars();
+    }
+
+    private void appendChars() {
+        buffer.append(chars.array(), chars.arrayOffset(), chars.position());
+    }
+}
@@ -0,0 +1,26 @@
+package org.uestc.weglas.util.exception;
+
+import org.uestc.weglas.core.enums.ResultEnum;
+
+/**
+ * 请求被限流或准入拒绝，携带建议的重试等待时间
+ *
+ * @author yingxian.cyx
+ * @date Created in 2026/10/18
+ */
+public class RateLimitedException extends ManagerBizException {
+
+    /**
+     * 建议的重试等待时间，单位毫秒
+     */
+    private final long retryAfterMillis;
+
+    public RateLimitedException(long retryAfterMillis) {
+        super(ResultEnum.RATE_LIMITED);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
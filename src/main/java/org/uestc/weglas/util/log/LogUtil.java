@@ -1,5 +1,6 @@
 package org.uestc.weglas.util.log;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.logging.log4j.Logger;
 
 /**
@@ -22,21 +23,21 @@ public class LogUtil {
 
     /**
      * @param logger
-     * @param var
+     * @param var    依次拼接为一条日志
      */
     public static void info(Logger logger, Object... var) {
         if (logger.isInfoEnabled()) {
-            logger.info(var);
+            logger.info(StringUtils.join(var));
         }
     }
 
     /**
      * @param logger
-     * @param var
+     * @param var    依次拼接为一条日志
      */
     public static void warn(Logger logger, Object... var) {
         if (logger.isWarnEnabled()) {
-            logger.warn(var);
+            logger.warn(StringUtils.join(var));
         }
     }
 
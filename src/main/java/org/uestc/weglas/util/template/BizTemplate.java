@@ -1,5 +1,7 @@
 package org.uestc.weglas.util.template;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.transaction.TransactionStatus;
@@ -10,6 +12,11 @@ import org.uestc.weglas.util.BaseResult;
 import org.uestc.weglas.util.exception.ManagerBizException;
 import org.uestc.weglas.util.log.LogUtil;
 
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author yingxian.cyx
  * @date Created in 2024/12/5
@@ -18,6 +25,13 @@ public class BizTemplate {
 
     private static final Logger logger = LogManager.getLogger(BizCallback.class);
 
+    /**
+     * 摘要日志，每次调用一行：场景,是否成功,结果码,耗时ms
+     */
+    private static final Logger digestLogger = LogManager.getLogger("BIZ-DIGEST");
+
+    private static final Map<Class<?>, String> SCENES = new ConcurrentHashMap<>();
+
     private static TransactionTemplate transactionTemplate;
 
     /**
@@ -28,6 +42,7 @@ public class BizTemplate {
      */
     public static <T> BaseResult<T> executeWithTransaction(BizCallback callback) {
 
+        long start = System.nanoTime();
         BaseResult<T> innerResult = new BaseResult<>();
         try {
             callback.checkParameter();
@@ -53,7 +68,7 @@ public class BizTemplate {
             LogUtil.error(logger, e, "RuntimeException");
         }
 
-        //TODO 摘要日志
+        digest(callback, innerResult, System.nanoTime() - start);
         return innerResult;
     }
 
@@ -65,6 +80,7 @@ public class BizTemplate {
      */
     public static <T> BaseResult<T> execute(BizCallback<T> callback) {
 
+        long start = System.nanoTime();
         BaseResult<T> innerResult = new BaseResult<>();
         try {
             callback.checkParameter();
@@ -83,10 +99,38 @@ public class BizTemplate {
             LogUtil.error(logger, e, "RuntimeException");
         }
 
-        //TODO 摘要日志
+        digest(callback, innerResult, System.nanoTime() - start);
         return innerResult;
     }
 
+    /**
+     * 记录耗时指标和摘要日志
+     */
+    private static void digest(BizCallback<?> callback, BaseResult<?> result, long nanos) {
+        String scene = sceneOf(callback);
+        Timer.builder("biz.template")
+                .description("业务模板执行耗时")
+                .tag("scene", scene)
+                .tag("result", String.valueOf(result.getResultCode()))
+                .register(Metrics.globalRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        LogUtil.info(digestLogger, scene, ",", result.isSuccess() ? "Y" : "N", ",", result.getResultCode(), ",",
+                TimeUnit.NANOSECONDS.toMillis(nanos), "ms");
+    }
+
+    /**
+     * 回调一般是接口方法中的匿名类，取 外部类.方法名 作为场景
+     */
+    private static String sceneOf(BizCallback<?> callback) {
+        return SCENES.computeIfAbsent(callback.getClass(), clazz -> {
+            Method method = clazz.getEnclosingMethod();
+            if (method == null) {
+                return clazz.getSimpleName();
+            }
+            return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        });
+    }
+
     public void setTransactionTemplate(TransactionTemplate transactionTemplate) {
         BizTemplate.transactionTemplate = transactionTemplate;
     }
@@ -4,9 +4,12 @@ CREATE TABLE `ai_conversation`
     `id`           INT(11) NOT NULL AUTO_INCREMENT PRIMARY KEY COMMENT '会话id',
     `title`        VARCHAR(256) NOT NULL COMMENT '会话名称',
     `llm_model`    VARCHAR(256) NULL COMMENT '会话使用模型',
+    `device_id`    VARCHAR(128) NULL COMMENT '绑定的设备id，mqtt设备会话使用',
     `ext`          mediumtext NULL COMMENT '扩展信息',
     `gmt_create`   DATETIME     NOT NULL DEFAULT NOW() COMMENT '创建时间',
-    `gmt_modified` DATETIME     NOT NULL DEFAULT NOW() COMMENT '上次更新时间'
+    `gmt_modified` DATETIME     NOT NULL DEFAULT NOW() COMMENT '上次更新时间',
+    KEY `idx_gmt_modified_id` (`gmt_modified`, `id`),
+    UNIQUE KEY `uk_device_id` (`device_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='会话信息表';
 
 DROP TABLE IF EXISTS `ai_conversation_chat_detail`;
@@ -19,6 +22,7 @@ CREATE TABLE `ai_conversation_chat_detail`
     `content`         mediumtext   NOT NULL COMMENT '对话内容',
     `ext`             mediumtext NULL COMMENT '扩展信息',
     `gmt_create`      DATETIME     NOT NULL DEFAULT NOW() COMMENT '创建时间',
-    `gmt_modified`    DATETIME     NOT NULL DEFAULT NOW() COMMENT '上次更新时间'
+    `gmt_modified`    DATETIME     NOT NULL DEFAULT NOW() COMMENT '上次更新时间',
+    KEY `idx_conversation_id_gmt_create` (`conversation_id`, `gmt_create`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='会话聊天详情表';
 